@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.0"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.example"
@@ -32,15 +33,18 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-websocket")
 	implementation("org.springframework.boot:spring-boot-starter-data-redis")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
 	implementation("org.flywaydb:flyway-core")
 	implementation("org.flywaydb:flyway-mysql")
 	implementation("org.springframework.session:spring-session-core")
 	compileOnly("org.projectlombok:lombok")
 	developmentOnly("org.springframework.boot:spring-boot-devtools")
 	runtimeOnly("com.mysql:mysql-connector-j")
+	runtimeOnly("io.micrometer:micrometer-registry-prometheus")
 	annotationProcessor("org.projectlombok:lombok")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("org.springframework.security:spring-security-test")
+	testImplementation("org.testcontainers:junit-jupiter")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 
 	// JWT Dependencies
@@ -62,8 +66,27 @@ dependencies {
 
 	// OpenAPI/Swagger
 	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.3.0")
+
+	// Embedded full-text search for chat and direct messages
+	implementation("org.apache.lucene:lucene-core:9.12.1")
+	implementation("org.apache.lucene:lucene-analysis-common:9.12.1")
+
+	// Microbenchmarks in src/jmh/java, run with ./gradlew jmh
+	jmhImplementation("org.springframework:spring-test")
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// Opt-in search benchmark, see MessageSearchBenchmarkTest
+	systemProperty("search.benchmark.messages", System.getProperty("search.benchmark.messages") ?: "")
+}
+
+jmh {
+	warmupIterations.set(2)
+	iterations.set(5)
+	fork.set(1)
+	// Reports allocated bytes per operation alongside the timings
+	profilers.add("gc")
+	// ./gradlew jmh -PjmhIncludes=ChatFanOut runs a single benchmark class
+	providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
 }
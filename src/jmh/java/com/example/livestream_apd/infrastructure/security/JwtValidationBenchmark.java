@@ -0,0 +1,80 @@
+package com.example.livestream_apd.infrastructure.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access tokens validated per second for a client that reuses its token.
+ * {@code parseThreeTimesPerCall} is validation before the change: a new key and parser
+ * for each of the username, type and expiry lookups. {@code singleParseNoCache} is the
+ * prebuilt parser with the verified-token cache turned off, and {@code cachedValidation}
+ * is {@link JwtTokenProvider#validateToken} as configured in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtTokenProvider cachingProvider;
+    private JwtTokenProvider uncachedProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingProvider = newProvider(10000);
+        uncachedProvider = newProvider(0);
+        token = cachingProvider.generateAccessToken("bench-user");
+    }
+
+    @Benchmark
+    public boolean parseThreeTimesPerCall() {
+        String username = parseClaims(token).getSubject();
+        String tokenType = parseClaims(token).get("type", String.class);
+        Date expiration = parseClaims(token).getExpiration();
+        return username != null && !expiration.before(new Date()) && "access".equals(tokenType);
+    }
+
+    @Benchmark
+    public boolean singleParseNoCache() {
+        return uncachedProvider.validateToken(token, null);
+    }
+
+    @Benchmark
+    public boolean cachedValidation() {
+        return cachingProvider.validateToken(token, null);
+    }
+
+    private static Claims parseClaims(String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    private static JwtTokenProvider newProvider(int verifiedCacheSize) {
+        JwtTokenProvider provider = new JwtTokenProvider(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "accessTokenExpiration", 86400000L);
+        ReflectionTestUtils.setField(provider, "refreshTokenExpiration", 604800000L);
+        ReflectionTestUtils.setField(provider, "issuer", "live_hungbao");
+        ReflectionTestUtils.setField(provider, "verifiedCacheSize", verifiedCacheSize);
+        provider.init();
+        return provider;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.livestream_apd.presentation.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one room broadcast to {@code recipients} members. {@code encodePerRecipient}
+ * is the fan-out before the change, serializing the payload into a new frame for every
+ * member; {@code encodeOnce} is {@link ChatWebSocketHandler#sendMessageToRoom}, which
+ * shares a single frame. Run with the gc profiler (enabled in build.gradle.kts) and
+ * compare {@code gc.alloc.rate.norm}, the bytes allocated per broadcast.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastSerializationBenchmark {
+
+    private static final String ROOM = "room";
+
+    @Param({"100", "1000", "20000"})
+    private int recipients;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatWebSocketHandler handler;
+    private final List<NoopWebSocketSession> members = new ArrayList<>();
+    private Map<String, Object> message;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = ChatFanOutBenchmark.newHandler(objectMapper);
+        for (int i = 0; i < recipients; i++) {
+            NoopWebSocketSession session = new NoopWebSocketSession("session-" + i, ROOM);
+            handler.afterConnectionEstablished(session);
+            members.add(session);
+        }
+        message = Map.of("type", "new_message", "roomId", ROOM, "userId", 1L, "username", "bench",
+                "content", "a chat line of typical length, long enough to matter when copied per member");
+    }
+
+    @Benchmark
+    public void encodePerRecipient() throws Exception {
+        for (NoopWebSocketSession member : members) {
+            member.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        handler.sendMessageToRoom(ROOM, message);
+    }
+}
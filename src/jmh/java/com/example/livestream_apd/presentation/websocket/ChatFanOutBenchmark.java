@@ -0,0 +1,96 @@
+package com.example.livestream_apd.presentation.websocket;
+
+import com.example.livestream_apd.infrastructure.websocket.ChatClusterRelay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of one chat line to a {@value #ROOM_SIZE}-member room on a node holding
+ * {@code sessions} connections in total. {@code scanAllSessions} is the fan-out before
+ * the room index: a parallel scan of every session on the node, checking each one's
+ * room. {@code roomIndex} is {@link ChatWebSocketHandler#sendMessageToRoom}, which looks
+ * up the room's members in its index. The scan sends a pre-encoded frame and the handler
+ * encodes the payload once per call, so the difference is the lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChatFanOutBenchmark {
+
+    private static final int ROOM_SIZE = 100;
+    private static final String TARGET_ROOM = "target";
+
+    @Param({"1000", "10000", "100000"})
+    private int sessions;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatWebSocketHandler handler;
+    private final Map<String, WebSocketSession> scannedSessions = new ConcurrentHashMap<>();
+    private final Map<String, String> scannedSessionRooms = new ConcurrentHashMap<>();
+    private Map<String, Object> message;
+    private TextMessage frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = newHandler(objectMapper);
+        for (int i = 0; i < sessions; i++) {
+            // The target room gets the first members; everyone else is spread over rooms of the same size
+            String roomId = i < ROOM_SIZE ? TARGET_ROOM : "room-" + (i / ROOM_SIZE);
+            NoopWebSocketSession session = new NoopWebSocketSession("session-" + i, roomId);
+            handler.afterConnectionEstablished(session);
+            scannedSessions.put(session.getId(), session);
+            scannedSessionRooms.put(session.getId(), roomId);
+        }
+        message = Map.of("type", "new_message", "roomId", TARGET_ROOM, "content", "hello", "userId", 1L);
+        frame = new TextMessage(objectMapper.writeValueAsString(message));
+    }
+
+    @Benchmark
+    public void scanAllSessions() {
+        scannedSessions.entrySet().parallelStream()
+                .filter(entry -> TARGET_ROOM.equals(scannedSessionRooms.get(entry.getKey())))
+                .forEach(entry -> {
+                    try {
+                        entry.getValue().sendMessage(frame);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+    }
+
+    @Benchmark
+    public void roomIndex() {
+        handler.sendMessageToRoom(TARGET_ROOM, message);
+    }
+
+    /**
+     * A single-node handler (no cluster relay) with the limits from application.yml.
+     */
+    static ChatWebSocketHandler newHandler(ObjectMapper objectMapper) {
+        ChatWebSocketHandler handler = new ChatWebSocketHandler(objectMapper, new SimpleMeterRegistry(),
+                new DefaultListableBeanFactory().getBeanProvider(ChatClusterRelay.class));
+        ReflectionTestUtils.setField(handler, "sendTimeLimit", 10000);
+        ReflectionTestUtils.setField(handler, "bufferSizeLimit", 524288);
+        ReflectionTestUtils.setField(handler, "lowPriorityDropThreshold", 65536);
+        ReflectionTestUtils.setField(handler, "typingExpiry", 6000L);
+        ReflectionTestUtils.setField(handler, "maxListedTypists", 5);
+        handler.init();
+        return handler;
+    }
+}
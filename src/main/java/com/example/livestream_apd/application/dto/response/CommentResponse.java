@@ -20,6 +20,9 @@ public class CommentResponse {
     private Boolean isPinned;
     private Boolean isLiked;
     private LocalDateTime createdAt;
+    private Long replyCount;
+    // Continues after the replies included here; null when they are all included
+    private String repliesCursor;
     @Builder.Default
     private List<CommentResponse> replies = new ArrayList<>();
 }
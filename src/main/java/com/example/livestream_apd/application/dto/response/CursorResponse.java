@@ -0,0 +1,38 @@
+package com.example.livestream_apd.application.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorResponse<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+
+    /**
+     * Builds the response for one keyset slice. {@code nextCursor} is taken from the last
+     * row when there are more rows, and {@code size} is the page size that was queried.
+     */
+    public static <E, T> CursorResponse<T> fromSlice(Slice<E> slice, Function<E, T> mapper, Function<E, String> cursorOf) {
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            nextCursor = cursorOf.apply(slice.getContent().get(slice.getNumberOfElements() - 1));
+        }
+        return CursorResponse.<T>builder()
+                .content(slice.map(mapper).getContent())
+                .size(slice.getSize())
+                .nextCursor(nextCursor)
+                .hasNext(slice.hasNext())
+                .build();
+    }
+}
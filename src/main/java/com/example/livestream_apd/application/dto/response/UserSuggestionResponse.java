@@ -0,0 +1,20 @@
+package com.example.livestream_apd.application.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSuggestionResponse {
+    private Long id;
+    private String username;
+    private String fullName;
+    private String avatarUrl;
+    private Boolean isVerified;
+    private Integer followersCount;
+    private Integer mutualCount;
+}
@@ -16,7 +16,9 @@ import java.util.Map;
 import java.util.Objects;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_room_keyset", columnList = "chat_room_id, is_deleted, created_at, id")
+})
 @Getter
 @Setter
 @ToString(exclude = {"user", "chatRoom", "parentMessage", "reactions"})
@@ -59,6 +59,17 @@ public class DirectConversation {
     @Column(name = "user2_deleted_at")
     private LocalDateTime user2DeletedAt;
 
+    // Unread counters are written only by atomic UPDATEs, never by entity saves
+    @Column(name = "user1_unread_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Builder.Default
+    private Integer user1UnreadCount = 0;
+
+    @Column(name = "user2_unread_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Builder.Default
+    private Integer user2UnreadCount = 0;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -130,6 +141,15 @@ public class DirectConversation {
         }
     }
 
+    public int getUnreadCountFor(User user) {
+        if (user.getId().equals(user1.getId())) {
+            return user1UnreadCount;
+        } else if (user.getId().equals(user2.getId())) {
+            return user2UnreadCount;
+        }
+        return 0;
+    }
+
     public User getOtherUser(User user) {
         if (user.getId().equals(user1.getId())) {
             return user2;
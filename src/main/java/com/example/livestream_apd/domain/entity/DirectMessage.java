@@ -15,7 +15,9 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "direct_messages")
+@Table(name = "direct_messages", indexes = {
+        @Index(name = "idx_direct_messages_conversation_keyset", columnList = "conversation_id, is_deleted, created_at, id")
+})
 @Getter
 @Setter
 @ToString(exclude = {"conversation", "sender", "replyToMessage"})
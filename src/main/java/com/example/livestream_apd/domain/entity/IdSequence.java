@@ -0,0 +1,30 @@
+package com.example.livestream_apd.domain.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Next unallocated id of an application-assigned id sequence. Rows are reserved in
+ * blocks by {@code ChatMessageIdAllocator}; the table only maps the schema.
+ */
+@Entity
+@Table(name = "id_sequences")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdSequence {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
@@ -50,7 +50,8 @@ public class Post {
     @Builder.Default
     private List<String> tags = new ArrayList<>();
 
-    @Column(name = "like_count")
+    // Written only by PostCounterAggregator's atomic UPDATEs, never by saving the entity
+    @Column(name = "like_count", updatable = false)
     @Builder.Default
     private Integer likeCount = 0;
 
@@ -58,7 +59,7 @@ public class Post {
     @Builder.Default
     private Integer commentCount = 0;
 
-    @Column(name = "share_count")
+    @Column(name = "share_count", updatable = false)
     @Builder.Default
     private Integer shareCount = 0;
 
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -64,12 +65,15 @@ public class User {
     @Column(name = "last_seen")
     private LocalDateTime lastSeen;    @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "user_social_links", joinColumns = @JoinColumn(name = "user_id"))
+    // Eager collections of a page of users load in one query per collection, not one per user
+    @BatchSize(size = 100)
     @MapKeyColumn(name = "platform")
     @Column(name = "url")
     @Builder.Default
     private Map<String, String> socialLinks = new HashMap<>();
 
     @ManyToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @BatchSize(size = 100)
     @JoinTable(
             name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -90,6 +94,17 @@ public class User {
     @Builder.Default
     private Integer followingCount = 0;
 
+    // Direct-message badge counters, written only by atomic UPDATEs in UserRepository
+    @Column(name = "unread_messages_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Builder.Default
+    private Integer unreadMessagesCount = 0;
+
+    @Column(name = "unread_conversations_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    @Builder.Default
+    private Integer unreadConversationsCount = 0;
+
     @Column(name = "is_private")
     @Builder.Default
     private Boolean isPrivate = false;
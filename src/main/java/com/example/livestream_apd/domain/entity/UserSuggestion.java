@@ -0,0 +1,65 @@
+package com.example.livestream_apd.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One precomputed "people you may know" entry. Each user has a bounded, ranked list
+ * that is replaced as a whole when the suggestion engine recomputes it.
+ */
+@Entity
+@Table(name = "user_suggestions", indexes = {
+        @Index(name = "idx_user_suggestions_user_position", columnList = "user_id, position")
+})
+@Getter
+@Setter
+@ToString(exclude = {"suggestedUser"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSuggestion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "suggested_user_id", nullable = false)
+    private User suggestedUser;
+
+    @Column(name = "position", nullable = false)
+    private Integer position;
+
+    @Column(name = "mutual_count", nullable = false)
+    private Integer mutualCount;
+
+    @Column(nullable = false)
+    private Double score;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserSuggestion that = (UserSuggestion) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
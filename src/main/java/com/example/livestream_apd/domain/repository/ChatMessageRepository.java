@@ -5,6 +5,7 @@ import com.example.livestream_apd.domain.entity.ChatRoom;
 import com.example.livestream_apd.domain.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -21,6 +22,29 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
 
     Page<ChatMessage> findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(Long chatRoomId, Pageable pageable);
 
+    // Search index support: rows of [id, roomId, content, createdAt] in id order, and hydration of hits
+    @Query("SELECT cm.id, cm.chatRoom.id, cm.content, cm.createdAt FROM ChatMessage cm " +
+           "WHERE cm.isDeleted = false AND cm.id > :afterId ORDER BY cm.id")
+    List<Object[]> findSearchIndexBatch(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT cm.id, cm.chatRoom.id, cm.content, cm.createdAt FROM ChatMessage cm " +
+           "WHERE cm.isDeleted = false AND cm.editedAt >= :since AND cm.id > :afterId ORDER BY cm.id")
+    List<Object[]> findSearchIndexEditedBatch(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.user WHERE cm.id IN :ids AND cm.isDeleted = false")
+    List<ChatMessage> findAllWithUserByIdIn(@Param("ids") List<Long> ids);
+
+    // Keyset page on (created_at, id); backed by idx_chat_messages_room_keyset, no COUNT query
+    @Query("SELECT cm FROM ChatMessage cm JOIN FETCH cm.user WHERE cm.chatRoom.id = :roomId AND cm.isDeleted = false " +
+           "AND (cm.createdAt < :createdAt OR (cm.createdAt = :createdAt AND cm.id < :id)) " +
+           "ORDER BY cm.createdAt DESC, cm.id DESC")
+    Slice<ChatMessage> findInRoomBefore(
+            @Param("roomId") Long roomId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+
     List<ChatMessage> findByChatRoomAndCreatedAtAfterAndIsDeletedFalseOrderByCreatedAtAsc(
             ChatRoom chatRoom, LocalDateTime after);
 
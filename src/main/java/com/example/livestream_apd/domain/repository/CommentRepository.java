@@ -4,15 +4,41 @@ import com.example.livestream_apd.domain.entity.Comment;
 import com.example.livestream_apd.domain.entity.Post;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
+    @EntityGraph(attributePaths = "user")
     Page<Comment> findByPostAndParentCommentIsNullOrderByIsPinnedDescCreatedAtDesc(Post post, Pageable pageable);
 
     List<Comment> findByParentCommentIdOrderByCreatedAtAsc(Long parentCommentId);
+
+    // Comment trees are expanded one level at a time: rows of [parentId, replyCount] for a page of comments
+    @Query("SELECT c.parentComment.id, COUNT(c) FROM Comment c WHERE c.parentComment.id IN :parentIds " +
+           "GROUP BY c.parentComment.id")
+    List<Object[]> countRepliesByParentIds(@Param("parentIds") Collection<Long> parentIds);
+
+    // Ids of the first :limit replies (oldest first) under each parent, in one pass
+    @Query(value = "SELECT r.id FROM (SELECT c.id, ROW_NUMBER() OVER " +
+           "(PARTITION BY c.parent_comment_id ORDER BY c.id) AS position " +
+           "FROM comments c WHERE c.parent_comment_id IN (:parentIds)) r WHERE r.position <= :limit",
+           nativeQuery = true)
+    List<Long> findFirstReplyIds(@Param("parentIds") Collection<Long> parentIds, @Param("limit") int limit);
+
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.id IN :ids ORDER BY c.id")
+    List<Comment> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset page of replies after the given id; ids are identity-generated, so id order is creation order
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.parentComment.id = :parentId AND c.id > :afterId " +
+           "ORDER BY c.id")
+    Slice<Comment> findRepliesAfter(@Param("parentId") Long parentId, @Param("afterId") Long afterId, Pageable pageable);
 }
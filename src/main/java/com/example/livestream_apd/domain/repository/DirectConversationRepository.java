@@ -4,21 +4,28 @@ import com.example.livestream_apd.domain.entity.DirectConversation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DirectConversationRepository extends JpaRepository<DirectConversation, Long> {
 
-    @Query("SELECT dc FROM DirectConversation dc " +
+    @Query(value = "SELECT dc FROM DirectConversation dc " +
+           "JOIN FETCH dc.user1 JOIN FETCH dc.user2 " +
            "WHERE (dc.user1.id = :userId OR dc.user2.id = :userId) " +
            "AND ((dc.user1.id = :userId AND dc.user1DeletedAt IS NULL) OR " +
            "     (dc.user2.id = :userId AND dc.user2DeletedAt IS NULL)) " +
-           "ORDER BY dc.lastMessageAt DESC, dc.updatedAt DESC")
+           "ORDER BY dc.lastMessageAt DESC, dc.updatedAt DESC",
+           countQuery = "SELECT COUNT(dc) FROM DirectConversation dc " +
+           "WHERE (dc.user1.id = :userId OR dc.user2.id = :userId) " +
+           "AND ((dc.user1.id = :userId AND dc.user1DeletedAt IS NULL) OR " +
+           "     (dc.user2.id = :userId AND dc.user2DeletedAt IS NULL))")
     Page<DirectConversation> findActiveConversationsByUserId(@Param("userId") Long userId, Pageable pageable);
 
     @Query("SELECT dc FROM DirectConversation dc " +
@@ -43,19 +50,64 @@ public interface DirectConversationRepository extends JpaRepository<DirectConver
            "AND dm.isDeleted = false")
     Long countUnreadMessages(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
 
-    @Query("SELECT dc FROM DirectConversation dc " +
+    // Materialized unread counters, one per participant
+    @Modifying
+    @Query("UPDATE DirectConversation dc SET " +
+           "dc.user1UnreadCount = CASE WHEN dc.user1.id = :userId " +
+           "    THEN greatest(dc.user1UnreadCount + :delta, 0) ELSE dc.user1UnreadCount END, " +
+           "dc.user2UnreadCount = CASE WHEN dc.user2.id = :userId " +
+           "    THEN greatest(dc.user2UnreadCount + :delta, 0) ELSE dc.user2UnreadCount END " +
+           "WHERE dc.id = :conversationId")
+    int addUnreadCount(
+            @Param("conversationId") Long conversationId,
+            @Param("userId") Long userId,
+            @Param("delta") int delta);
+
+    @Query("SELECT CASE WHEN dc.user1.id = :userId THEN dc.user1UnreadCount ELSE dc.user2UnreadCount END " +
+           "FROM DirectConversation dc " +
+           "WHERE dc.id = :conversationId")
+    Integer findUnreadCount(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE direct_conversations dc SET " +
+           "dc.user1_unread_count = (SELECT COUNT(*) FROM direct_messages dm " +
+           "  WHERE dm.conversation_id = dc.id AND dm.sender_id <> dc.user1_id " +
+           "  AND dm.is_read = false AND dm.is_deleted = false), " +
+           "dc.user2_unread_count = (SELECT COUNT(*) FROM direct_messages dm " +
+           "  WHERE dm.conversation_id = dc.id AND dm.sender_id <> dc.user2_id " +
+           "  AND dm.is_read = false AND dm.is_deleted = false) " +
+           "WHERE dc.id BETWEEN :fromId AND :toId",
+           nativeQuery = true)
+    int reconcileUnreadCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(dc.id), 0) FROM DirectConversation dc")
+    Long findMaxId();
+
+    @Query(value = "SELECT dc FROM DirectConversation dc " +
+           "JOIN FETCH dc.user1 JOIN FETCH dc.user2 " +
            "WHERE (dc.user1.id = :userId OR dc.user2.id = :userId) " +
            "AND ((dc.user1.id = :userId AND dc.user1DeletedAt IS NULL) OR " +
            "     (dc.user2.id = :userId AND dc.user2DeletedAt IS NULL)) " +
-           "AND EXISTS (SELECT 1 FROM DirectMessage dm " +
-           "           WHERE dm.conversation = dc " +
-           "           AND dm.sender.id != :userId " +
-           "           AND dm.isRead = false " +
-           "           AND dm.isDeleted = false) " +
-           "ORDER BY dc.lastMessageAt DESC")
+           "AND ((dc.user1.id = :userId AND dc.user1UnreadCount > 0) OR " +
+           "     (dc.user2.id = :userId AND dc.user2UnreadCount > 0)) " +
+           "ORDER BY dc.lastMessageAt DESC",
+           countQuery = "SELECT COUNT(dc) FROM DirectConversation dc " +
+           "WHERE ((dc.user1.id = :userId AND dc.user1DeletedAt IS NULL AND dc.user1UnreadCount > 0) OR " +
+           "       (dc.user2.id = :userId AND dc.user2DeletedAt IS NULL AND dc.user2UnreadCount > 0))")
     Page<DirectConversation> findConversationsWithUnreadMessages(@Param("userId") Long userId, Pageable pageable);
 
-    @Query("SELECT dc FROM DirectConversation dc " +
+    @Query(value = "SELECT dc FROM DirectConversation dc " +
+           "JOIN FETCH dc.user1 u1 " +
+           "JOIN FETCH dc.user2 u2 " +
+           "WHERE (dc.user1.id = :userId OR dc.user2.id = :userId) " +
+           "AND ((dc.user1.id = :userId AND dc.user1DeletedAt IS NULL) OR " +
+           "     (dc.user2.id = :userId AND dc.user2DeletedAt IS NULL)) " +
+           "AND (LOWER(u1.username) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "     LOWER(u1.fullName) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "     LOWER(u2.username) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "     LOWER(u2.fullName) LIKE LOWER(CONCAT('%', :query, '%'))) " +
+           "ORDER BY dc.lastMessageAt DESC",
+           countQuery = "SELECT COUNT(dc) FROM DirectConversation dc " +
            "JOIN dc.user1 u1 " +
            "JOIN dc.user2 u2 " +
            "WHERE (dc.user1.id = :userId OR dc.user2.id = :userId) " +
@@ -64,8 +116,7 @@ public interface DirectConversationRepository extends JpaRepository<DirectConver
            "AND (LOWER(u1.username) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "     LOWER(u1.fullName) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "     LOWER(u2.username) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "     LOWER(u2.fullName) LIKE LOWER(CONCAT('%', :query, '%'))) " +
-           "ORDER BY dc.lastMessageAt DESC")
+           "     LOWER(u2.fullName) LIKE LOWER(CONCAT('%', :query, '%')))")
     Page<DirectConversation> searchConversations(@Param("userId") Long userId, @Param("query") String query, Pageable pageable);
 
     @Query("SELECT dc FROM DirectConversation dc " +
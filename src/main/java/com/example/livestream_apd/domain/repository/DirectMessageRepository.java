@@ -3,6 +3,7 @@ package com.example.livestream_apd.domain.repository;
 import com.example.livestream_apd.domain.entity.DirectMessage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -79,6 +80,32 @@ public interface DirectMessageRepository extends JpaRepository<DirectMessage, Lo
             @Param("userId") Long userId, 
             @Param("readAt") LocalDateTime readAt);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE DirectMessage dm SET dm.isRead = true, dm.readAt = :readAt " +
+           "WHERE dm.id = :messageId " +
+           "AND dm.sender.id != :userId " +
+           "AND dm.isRead = false " +
+           "AND dm.isDeleted = false")
+    int markAsRead(
+            @Param("messageId") Long messageId, 
+            @Param("userId") Long userId, 
+            @Param("readAt") LocalDateTime readAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DirectMessage dm SET dm.isRead = true, dm.readAt = :readAt " +
+           "WHERE dm.conversation.id = :conversationId " +
+           "AND dm.id <= :upToMessageId " +
+           "AND dm.sender.id != :userId " +
+           "AND dm.isRead = false " +
+           "AND dm.isDeleted = false")
+    int markAsReadUpTo(
+            @Param("conversationId") Long conversationId, 
+            @Param("userId") Long userId, 
+            @Param("upToMessageId") Long upToMessageId, 
+            @Param("readAt") LocalDateTime readAt);
+
     @Query("SELECT dm FROM DirectMessage dm " +
            "WHERE dm.conversation.id = :conversationId " +
            "AND dm.isDeleted = false " +
@@ -86,6 +113,17 @@ public interface DirectMessageRepository extends JpaRepository<DirectMessage, Lo
            "LIMIT 1")
     Optional<DirectMessage> findLastMessage(@Param("conversationId") Long conversationId);
 
+    // Newest non-deleted message of each conversation; ids are IDENTITY so MAX(id) is the latest insert
+    @Query("SELECT dm FROM DirectMessage dm " +
+           "JOIN FETCH dm.sender " +
+           "LEFT JOIN FETCH dm.replyToMessage r " +
+           "LEFT JOIN FETCH r.sender " +
+           "WHERE dm.conversation.id IN :conversationIds " +
+           "AND dm.id = (SELECT MAX(last.id) FROM DirectMessage last " +
+           "             WHERE last.conversation = dm.conversation " +
+           "             AND last.isDeleted = false)")
+    List<DirectMessage> findLastMessages(@Param("conversationIds") List<Long> conversationIds);
+
     @Query("SELECT dm FROM DirectMessage dm " +
            "WHERE dm.conversation.id = :conversationId " +
            "AND dm.sender.id = :senderId " +
@@ -138,4 +176,55 @@ public interface DirectMessageRepository extends JpaRepository<DirectMessage, Lo
             @Param("conversationId") Long conversationId, 
             @Param("before") LocalDateTime before, 
             Pageable pageable);
+
+    // Search index support: rows of [id, conversationId, content, createdAt] in id order, and hydration of hits
+    @Query("SELECT dm.id, dm.conversation.id, dm.content, dm.createdAt FROM DirectMessage dm " +
+           "WHERE dm.isDeleted = false AND dm.id > :afterId ORDER BY dm.id")
+    List<Object[]> findSearchIndexBatch(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT dm.id, dm.conversation.id, dm.content, dm.createdAt FROM DirectMessage dm " +
+           "WHERE dm.isDeleted = false AND dm.editedAt >= :since AND dm.id > :afterId ORDER BY dm.id")
+    List<Object[]> findSearchIndexEditedBatch(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    @Query("SELECT dm FROM DirectMessage dm JOIN FETCH dm.sender WHERE dm.id IN :ids AND dm.isDeleted = false")
+    List<DirectMessage> findAllWithSenderByIdIn(@Param("ids") List<Long> ids);
+
+    // Keyset pages on (created_at, id); backed by idx_direct_messages_conversation_keyset, no COUNT query
+    @Query("SELECT dm FROM DirectMessage dm JOIN FETCH dm.sender " +
+           "WHERE dm.conversation.id = :conversationId " +
+           "AND dm.isDeleted = false " +
+           "AND (dm.createdAt < :createdAt OR (dm.createdAt = :createdAt AND dm.id < :id)) " +
+           "ORDER BY dm.createdAt DESC, dm.id DESC")
+    Slice<DirectMessage> findMessagesBeforeCursor(
+            @Param("conversationId") Long conversationId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Query("SELECT dm FROM DirectMessage dm JOIN FETCH dm.sender " +
+           "WHERE dm.conversation.id = :conversationId " +
+           "AND dm.isDeleted = false " +
+           "AND LOWER(dm.content) LIKE LOWER(CONCAT('%', :query, '%')) " +
+           "AND (dm.createdAt < :createdAt OR (dm.createdAt = :createdAt AND dm.id < :id)) " +
+           "ORDER BY dm.createdAt DESC, dm.id DESC")
+    Slice<DirectMessage> searchInConversationBeforeCursor(
+            @Param("conversationId") Long conversationId,
+            @Param("query") String query,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Query("SELECT dm FROM DirectMessage dm JOIN FETCH dm.sender " +
+           "WHERE dm.conversation.id = :conversationId " +
+           "AND dm.messageType IN :mediaTypes " +
+           "AND dm.isDeleted = false " +
+           "AND (dm.createdAt < :createdAt OR (dm.createdAt = :createdAt AND dm.id < :id)) " +
+           "ORDER BY dm.createdAt DESC, dm.id DESC")
+    Slice<DirectMessage> findMediaMessagesBeforeCursor(
+            @Param("conversationId") Long conversationId,
+            @Param("mediaTypes") List<DirectMessage.MessageType> mediaTypes,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
 }
@@ -6,8 +6,12 @@ import com.example.livestream_apd.domain.entity.Like;
 import com.example.livestream_apd.domain.entity.Post;
 import com.example.livestream_apd.domain.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +22,11 @@ public interface LikeRepository extends JpaRepository<Like, Long> {
     boolean existsByUserAndPost(User user, Post post);
 
     void deleteByUserAndPost(User user, Post post);
+
+    // Viewer state for a page of posts in one query
+    @Query("SELECT l.post.id FROM Like l WHERE l.user = :user AND l.post.id IN :postIds")
+    List<Long> findLikedPostIds(@Param("user") User user, @Param("postIds") Collection<Long> postIds);
+
+    @Query("SELECT l.comment.id FROM Like l WHERE l.user = :user AND l.comment.id IN :commentIds")
+    List<Long> findLikedCommentIds(@Param("user") User user, @Param("commentIds") Collection<Long> commentIds);
 }
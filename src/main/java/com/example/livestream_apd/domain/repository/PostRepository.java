@@ -5,30 +5,69 @@ import com.example.livestream_apd.domain.entity.Post;
 import com.example.livestream_apd.domain.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    @EntityGraph(attributePaths = "user")
     Page<Post> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
 
     Page<Post> findByIsPublicTrueOrderByCreatedAtDesc(Pageable pageable);
 
+    @EntityGraph(attributePaths = "user")
     Page<Post> findByUserAndIsPublicTrueOrderByCreatedAtDesc(User user, Pageable pageable);
 
-    @Query("SELECT p FROM Post p WHERE p.isPublic = true AND (p.user = ?1 OR p.user IN " +
-            "(SELECT f.following FROM User u JOIN u.following f WHERE u = ?1)) " +
-            "ORDER BY p.createdAt DESC")
+    @Query(value = "SELECT p FROM Post p JOIN FETCH p.user WHERE p.isPublic = true AND (p.user = ?1 OR p.user IN " +
+            "(SELECT f FROM User u JOIN u.following f WHERE u = ?1)) " +
+            "ORDER BY p.createdAt DESC",
+            countQuery = "SELECT COUNT(p) FROM Post p WHERE p.isPublic = true AND (p.user = ?1 OR p.user IN " +
+            "(SELECT f FROM User u JOIN u.following f WHERE u = ?1))")
     Page<Post> findTimelineForUser(User user, Pageable pageable);
 
-    @Query("SELECT p FROM Post p WHERE p.isPublic = true " +
-            "ORDER BY (p.likeCount * 3 + p.commentCount * 2 + p.shareCount) DESC, p.createdAt DESC")
+    // Home timeline store support: ids only, newest first. Ids are identity-generated, so id order is creation order
+    @Query("SELECT p.id FROM Post p WHERE p.isPublic = true AND (p.user.id = ?1 OR p.user.id IN " +
+            "(SELECT f.id FROM User u JOIN u.following f WHERE u.id = ?1 AND f.followersCount < ?2)) " +
+            "ORDER BY p.id DESC")
+    List<Long> findTimelinePostIds(Long userId, int fanOutFollowerLimit, Pageable pageable);
+
+    @Query("SELECT p.id FROM Post p WHERE p.isPublic = true AND p.id > ?3 AND (p.user.id = ?1 OR p.user.id IN " +
+            "(SELECT f.id FROM User u JOIN u.following f WHERE u.id = ?1 AND f.followersCount < ?2)) " +
+            "ORDER BY p.id DESC")
+    List<Long> findTimelinePostIdsAfter(Long userId, int fanOutFollowerLimit, Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id FROM Post p WHERE p.isPublic = true AND p.user.id IN " +
+            "(SELECT f.id FROM User u JOIN u.following f WHERE u.id = ?1 AND f.followersCount >= ?2) " +
+            "ORDER BY p.id DESC")
+    List<Long> findPulledTimelinePostIds(Long userId, int fanOutFollowerLimit, Pageable pageable);
+
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.id IN ?1")
+    List<Post> findAllWithUserByIdIn(List<Long> ids);
+
+    // Applies aggregated like/share deltas atomically
+    @Modifying
+    @Query("UPDATE Post p SET p.likeCount = greatest(p.likeCount + ?2, 0), " +
+            "p.shareCount = greatest(p.shareCount + ?3, 0) WHERE p.id = ?1")
+    int addCounts(Long postId, int likes, int shares);
+
+    @Query(value = "SELECT p FROM Post p JOIN FETCH p.user WHERE p.isPublic = true " +
+            "ORDER BY (p.likeCount * 3 + p.commentCount * 2 + p.shareCount) DESC, p.createdAt DESC",
+            countQuery = "SELECT COUNT(p) FROM Post p WHERE p.isPublic = true")
     Page<Post> findTrendingPosts(Pageable pageable);
 
+    // Trending ranker seed: rows of [id, engagement score, createdAt] for recent public posts with any engagement
+    @Query("SELECT p.id, (p.likeCount * 3 + p.commentCount * 2 + p.shareCount), p.createdAt FROM Post p " +
+            "WHERE p.isPublic = true AND p.createdAt >= ?1 AND (p.likeCount * 3 + p.commentCount * 2 + p.shareCount) > 0 " +
+            "ORDER BY p.createdAt DESC")
+    List<Object[]> findTrendingSeed(LocalDateTime since, Pageable pageable);
+
     @Query("SELECT p FROM Post p WHERE p.isPublic = true AND " +
             "(LOWER(p.caption) LIKE LOWER(CONCAT('%', ?1, '%')) OR " +
             "EXISTS (SELECT t FROM p.tags t WHERE LOWER(t) LIKE LOWER(CONCAT('%', ?1, '%')))) " +
@@ -5,8 +5,12 @@ import com.example.livestream_apd.domain.entity.Post;
 import com.example.livestream_apd.domain.entity.Share;
 import com.example.livestream_apd.domain.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +19,8 @@ public interface ShareRepository extends JpaRepository<Share, Long> {
     int countByPost(Post post);
 
     Optional<Share> findByUserAndPost(User user, Post post);
+
+    // Viewer state for a page of posts in one query
+    @Query("SELECT DISTINCT s.post.id FROM Share s WHERE s.user = :user AND s.post.id IN :postIds")
+    List<Long> findSharedPostIds(@Param("user") User user, @Param("postIds") Collection<Long> postIds);
 }
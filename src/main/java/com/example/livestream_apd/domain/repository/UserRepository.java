@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -58,6 +59,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("UPDATE User u SET u.followingCount = :count WHERE u.id = :userId")
     void updateFollowingCount(@Param("userId") Long userId, @Param("count") Integer count);
 
+    // Unread direct-message counters
+    @Modifying
+    @Query("UPDATE User u SET " +
+            "u.unreadMessagesCount = greatest(u.unreadMessagesCount + :messages, 0), " +
+            "u.unreadConversationsCount = greatest(u.unreadConversationsCount + :conversations, 0) " +
+            "WHERE u.id = :userId")
+    int addUnreadCounts(@Param("userId") Long userId,
+                        @Param("messages") int messages,
+                        @Param("conversations") int conversations);
+
+    @Query("SELECT u.unreadConversationsCount FROM User u WHERE u.id = :userId")
+    Optional<Integer> findUnreadConversationsCount(@Param("userId") Long userId);
+
+    // Recomputes the badge counters from the per-conversation counters, skipping conversations the user deleted
+    @Modifying
+    @Query(value = "UPDATE users u SET " +
+            "u.unread_messages_count = (SELECT COALESCE(SUM(CASE WHEN dc.user1_id = u.id " +
+            "    THEN dc.user1_unread_count ELSE dc.user2_unread_count END), 0) " +
+            "  FROM direct_conversations dc " +
+            "  WHERE (dc.user1_id = u.id AND dc.user1_deleted_at IS NULL) " +
+            "     OR (dc.user2_id = u.id AND dc.user2_deleted_at IS NULL)), " +
+            "u.unread_conversations_count = (SELECT COUNT(*) FROM direct_conversations dc " +
+            "  WHERE (dc.user1_id = u.id AND dc.user1_deleted_at IS NULL AND dc.user1_unread_count > 0) " +
+            "     OR (dc.user2_id = u.id AND dc.user2_deleted_at IS NULL AND dc.user2_unread_count > 0)) " +
+            "WHERE u.id BETWEEN :fromId AND :toId",
+            nativeQuery = true)
+    int reconcileUnreadCounts(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    Long findMaxId();
+
     @Query("SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM User u " +
             "JOIN u.following f WHERE u.id = :followerId AND f.id = :followingId")
     boolean isFollowing(@Param("followerId") Long followerId, @Param("followingId") Long followingId);
@@ -68,6 +100,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u JOIN u.following f WHERE f.id = :userId")
     Page<User> findFollowingByUserId(@Param("userId") Long userId, Pageable pageable);
 
+    // Keyset batches of follower / followed ids, for timeline fan-out and the follow graph cache
+    @Query("SELECT u.id FROM User u JOIN u.following f WHERE f.id = :userId AND u.id > :afterId ORDER BY u.id")
+    List<Long> findFollowerIdsAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT f.id FROM User u JOIN u.following f WHERE u.id = :userId AND f.id > :afterId ORDER BY f.id")
+    List<Long> findFollowingIdsAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Relationship flags for a list of users in one query, when the full adjacency is too large to cache
+    @Query("SELECT f.id FROM User u JOIN u.following f WHERE u.id = :userId AND f.id IN :targetIds")
+    List<Long> findFollowingIdsAmong(@Param("userId") Long userId, @Param("targetIds") Collection<Long> targetIds);
+
+    @Query("SELECT u.id FROM User u JOIN u.following f WHERE f.id = :userId AND u.id IN :targetIds")
+    List<Long> findFollowerIdsAmong(@Param("userId") Long userId, @Param("targetIds") Collection<Long> targetIds);
+
     // Search methods
     @Query("SELECT u FROM User u WHERE " +
             "(LOWER(u.username) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
@@ -86,6 +132,17 @@ public interface UserRepository extends JpaRepository<User, Long> {
         return findUserSuggestions(userId, PageRequest.of(0, limit));
     }
 
+    // Suggestion engine top-up: rows of [id, followersCount] for the most followed active users
+    @Query("SELECT u.id, u.followersCount FROM User u " +
+            "WHERE u.status = com.example.livestream_apd.domain.entity.User.UserStatus.ACTIVE " +
+            "ORDER BY u.followersCount DESC, u.id")
+    List<Object[]> findMostFollowedActiveUsers(Pageable pageable);
+
+    // Users this user blocked or was blocked by
+    @Query(value = "SELECT blocked_id FROM user_blocks WHERE blocker_id = :userId " +
+            "UNION SELECT blocker_id FROM user_blocks WHERE blocked_id = :userId", nativeQuery = true)
+    List<Long> findBlockRelatedIds(@Param("userId") Long userId);
+
     // Block/Unblock methods
     @Query("SELECT CASE WHEN COUNT(b) > 0 THEN true ELSE false END FROM User u " +
             "JOIN u.blockedUsers b WHERE u.id = :blockerId AND b.id = :blockedId")
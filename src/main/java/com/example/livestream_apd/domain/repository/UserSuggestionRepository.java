@@ -0,0 +1,43 @@
+package com.example.livestream_apd.domain.repository;
+
+import com.example.livestream_apd.domain.entity.UserSuggestion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserSuggestionRepository extends JpaRepository<UserSuggestion, Long> {
+
+    // Point lookup of a user's ranked list; backed by idx_user_suggestions_user_position
+    @Query("SELECT s FROM UserSuggestion s JOIN FETCH s.suggestedUser WHERE s.userId = :userId ORDER BY s.position")
+    List<UserSuggestion> findByUserIdWithSuggestedUser(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM UserSuggestion s WHERE s.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    /**
+     * Second-degree candidates: users followed by the people this user follows, that the
+     * user does not follow yet, with no block either way. Rows of
+     * [candidateId, mutualCount, followersCount], most mutual follows first.
+     */
+    @Query(value = "SELECT f2.following_id, COUNT(*) AS mutuals, u.followers_count " +
+            "FROM user_follows f1 " +
+            "JOIN user_follows f2 ON f2.follower_id = f1.following_id " +
+            "JOIN users u ON u.id = f2.following_id " +
+            "WHERE f1.follower_id = :userId AND f2.following_id <> :userId AND u.status = 'ACTIVE' " +
+            "AND NOT EXISTS (SELECT 1 FROM user_follows mine " +
+            "  WHERE mine.follower_id = :userId AND mine.following_id = f2.following_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM user_blocks b " +
+            "  WHERE (b.blocker_id = :userId AND b.blocked_id = f2.following_id) " +
+            "     OR (b.blocker_id = f2.following_id AND b.blocked_id = :userId)) " +
+            "GROUP BY f2.following_id, u.followers_count " +
+            "ORDER BY mutuals DESC, u.followers_count DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findSecondDegreeCandidates(@Param("userId") Long userId, @Param("limit") int limit);
+}
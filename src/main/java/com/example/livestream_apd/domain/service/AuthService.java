@@ -7,7 +7,10 @@ import com.example.livestream_apd.application.dto.request.*;
 import com.example.livestream_apd.domain.entity.*;
 import com.example.livestream_apd.domain.repository.*;
 
+import com.example.livestream_apd.infrastructure.ratelimit.LoginAttemptGuard;
 import com.example.livestream_apd.infrastructure.security.JwtTokenProvider;
+import com.example.livestream_apd.infrastructure.security.PrincipalCache;
+import com.example.livestream_apd.infrastructure.service.AuditLogWriter;
 import com.example.livestream_apd.utils.TimeUtil;
 import com.nimbusds.openid.connect.sdk.LogoutRequest;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +20,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -40,12 +44,14 @@ public class AuthService {
     private final PermissionRepository permissionRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final EmailVerificationTokenRepository emailVerificationTokenRepository;
-    private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
     private final AuthenticationManager authenticationManager;
     private final OtpService otpService;
     private final EmailService emailService;
+    private final PrincipalCache principalCache;
+    private final LoginAttemptGuard loginAttemptGuard;
 
     @Value("300000")
     private long otpExpiration;
@@ -93,7 +99,7 @@ public class AuthService {
                     .build();
             emailVerificationTokenRepository.save(verificationToken);
             emailService.sendEmailVerificationOtp(request.getEmail(),request.getFullName(),otpCode,token);
-            auditLogRepository.save(AuditLog.registrationSuccess(user,ipAddress,userAgent));
+            auditLogWriter.record(AuditLog.registrationSuccess(user,ipAddress,userAgent));
             UserResponse userResponse = mapToUserResponse(user);
             return ApiResponse.success("Đăng kí thành công vui lòng kiểm tra email để xác thực tài khoản", userResponse);
 
@@ -105,24 +111,38 @@ public class AuthService {
 
     public ApiResponse<AuthResponse> login (LoginRequest request, String ipAddress, String userAgent) {
         try{
+            // Checked before the user lookup and BCrypt, so throttled attempts cost no query or hashing
+            long retryAfter = loginAttemptGuard.retryAfterMillis(ipAddress, request.getEmailOrUsername());
+            if (retryAfter > 0){
+                auditLogWriter.record(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent,"Throttled"));
+                return ApiResponse.error("Đăng nhập sai quá nhiều lần, vui lòng thử lại sau " + (retryAfter + 999) / 1000 + " giây");
+            }
             Optional<User> userOptional = userRepository.findByEmailOrUsername(request.getEmailOrUsername(), request.getEmailOrUsername());
             if(userOptional.isEmpty()){
-                auditLogRepository.save(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent,"User not found"));
+                loginAttemptGuard.onFailure(ipAddress, request.getEmailOrUsername());
+                auditLogWriter.record(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent,"User not found"));
                 return ApiResponse.error("Tên đăng nhập và mật khẩu không đúng");
             }
             User user = userOptional.get();
             if (!user.canLogin()){
                 String reason = user.getStatus() == User.UserStatus.BANNED?"Account Banned" : "Email not verified";
-                auditLogRepository.save(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent,reason));
+                auditLogWriter.record(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent,reason));
                 if (user.getStatus() == User.UserStatus.BANNED){
                     return ApiResponse.error("Tài Khoản bị khoá");
                 } else {
                     return ApiResponse.error("Vui lòng xác thực email trước khi đăng nhập");
                 }
             }
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken (user.getEmail(),request.getPassword())
-            );
+            Authentication authentication;
+            try {
+                authentication = loginAttemptGuard.timePasswordCheck(() -> authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken (user.getEmail(),request.getPassword())
+                ));
+            } catch (AuthenticationException e) {
+                loginAttemptGuard.onFailure(ipAddress, request.getEmailOrUsername());
+                throw e;
+            }
+            loginAttemptGuard.onSuccess(request.getEmailOrUsername());
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String accessToken = jwtTokenProvider.generateAccessToken(user.getEmail());
             String refreshToken = jwtTokenProvider.generateRefreshToken(user.getEmail());
@@ -141,7 +161,7 @@ public class AuthService {
             user.updateLastSeen();
             userRepository.save(user);
 
-            auditLogRepository.save(AuditLog.loginSuccess(user, ipAddress, userAgent));
+            auditLogWriter.record(AuditLog.loginSuccess(user, ipAddress, userAgent));
             AuthResponse authResponse = AuthResponse.builder()
                     .accessToken(accessToken)
                     .refreshToken(refreshToken)
@@ -152,7 +172,7 @@ public class AuthService {
             return ApiResponse.success("Đăng nhập thành công" ,authResponse);
         } catch (Exception e){
             log.error("Đăng nhập thất bại vì {}", request.getEmailOrUsername(),e);
-            auditLogRepository.save(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent, e.getMessage()));
+            auditLogWriter.record(AuditLog.loginFailure(request.getEmailOrUsername(),ipAddress,userAgent, e.getMessage()));
             return ApiResponse.error("Đăng nhập thất bại" + e.getMessage());
         }
     }
@@ -190,6 +210,7 @@ public class AuthService {
             User user = token.getUser();
             user.activate();
             userRepository.save(user);
+            principalCache.invalidate(user.getEmail());
 
             // Invalidate all other verification tokens for this user
             emailVerificationTokenRepository.invalidateAllUserTokens(user);
@@ -198,7 +219,7 @@ public class AuthService {
             emailService.sendWelcomeEmail(user.getEmail(), user.getFullName());
 
             // Log successful verification
-            auditLogRepository.save(AuditLog.emailVerificationSuccess(user, ipAddress, userAgent));
+            auditLogWriter.record(AuditLog.emailVerificationSuccess(user, ipAddress, userAgent));
 
             return ApiResponse.success("Xác thực email thành công! Tài khoản đã được kích hoạt.");
 
@@ -234,7 +255,7 @@ public class AuthService {
                     otpCode,
                     token
             );
-            auditLogRepository.save(AuditLog.passwordResetRequest(
+            auditLogWriter.record(AuditLog.passwordResetRequest(
                     user,
                     ipAddress,
                     userAgent
@@ -274,9 +295,10 @@ public class AuthService {
             userRepository.save(user);
 
             userSessionRepository.invalidateAllUserSessions(user);
+            principalCache.invalidate(user.getEmail());
             passwordResetTokenRepository.invalidateAllUserTokens(user);
             emailService.sendPasswordChangeConfirmation(user.getEmail(), user.getFullName());
-            auditLogRepository.save(AuditLog.passwordResetSuccess(user, ipAddress, userAgent));
+            auditLogWriter.record(AuditLog.passwordResetSuccess(user, ipAddress, userAgent));
             return ApiResponse.success("Đặt lại mật khẩu thành công, vui lòng đăng nhập lại");
 
         }catch (Exception e){
@@ -334,7 +356,7 @@ public class AuthService {
                     otpCode,
                     token
             );
-            auditLogRepository.save(AuditLog
+            auditLogWriter.record(AuditLog
                     .builder()
                     .user(user)
                     .action("RESEND_EMAIL_VERIFICATION")
@@ -362,6 +384,7 @@ public class AuthService {
                 User user = session.getUser();
                 user.goOffline();
                 userRepository.save(user);
+                principalCache.invalidate(user.getEmail());
             }
             SecurityContextHolder.clearContext();
             return ApiResponse.success("Đăng xuất thành công");
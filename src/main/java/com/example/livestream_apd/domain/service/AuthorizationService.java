@@ -6,6 +6,7 @@ import com.example.livestream_apd.domain.entity.User;
 import com.example.livestream_apd.domain.repository.PermissionRepository;
 import com.example.livestream_apd.domain.repository.RoleRepository;
 import com.example.livestream_apd.domain.repository.UserRepository;
+import com.example.livestream_apd.infrastructure.security.PrincipalCache;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,12 +26,14 @@ public class AuthorizationService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PermissionRepository permissionRepository;
+    private final PrincipalCache principalCache;
 
     public void assignRoleToUser(Long userId, Role.RoleName  roleName) {
         User user = userRepository.findById(userId).orElseThrow(()-> new RuntimeException("User not found"));
         Role role = roleRepository.findByName(roleName).orElseThrow(()-> new RuntimeException("Role not found"));
         user.addRole(role);
         userRepository.save(user);
+        principalCache.invalidate(user.getEmail());
         log.info("Assigned role {} to user: {}", role, user.getEmail());
     }
 
@@ -39,6 +42,7 @@ public class AuthorizationService {
         Role role = roleRepository.findByName(roleName).orElseThrow(()-> new RuntimeException("Role not found"));
         user.removeRole(role);
         userRepository.save(user);
+        principalCache.invalidate(user.getEmail());
         log.info("Removed role {} from user: {}", role, user.getEmail());
     }
 
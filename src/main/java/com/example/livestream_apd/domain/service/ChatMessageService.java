@@ -5,6 +5,7 @@ import com.example.livestream_apd.application.dto.request.ReactToMessageRequest;
 import com.example.livestream_apd.application.dto.request.SendMessageRequest;
 import com.example.livestream_apd.application.dto.request.TypingIndicatorRequest;
 import com.example.livestream_apd.application.dto.response.ChatMessageResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.domain.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -15,6 +16,8 @@ public interface ChatMessageService {
     
     Page<ChatMessageResponse> getMessagesInRoom(Long chatRoomId, Pageable pageable);
     
+    CursorResponse<ChatMessageResponse> getMessagesInRoomByCursor(Long chatRoomId, String cursor, int size);
+    
     ChatMessageResponse editMessage(Long messageId, EditMessageRequest request, User currentUser);
     
     void deleteMessage(Long messageId, User currentUser);
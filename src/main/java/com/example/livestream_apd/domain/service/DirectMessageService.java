@@ -4,6 +4,7 @@ import com.example.livestream_apd.application.dto.request.EditDirectMessageReque
 import com.example.livestream_apd.application.dto.request.SearchDirectMessageRequest;
 import com.example.livestream_apd.application.dto.request.SendDirectMessageRequest;
 import com.example.livestream_apd.application.dto.response.ApiResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.DirectMessageResponse;
 import com.example.livestream_apd.application.dto.response.PagedResponse;
 import com.example.livestream_apd.domain.entity.DirectMessage;
@@ -18,6 +19,9 @@ public interface DirectMessageService {
     
     ApiResponse<PagedResponse<DirectMessageResponse>> getMessages(Long conversationId, Long currentUserId, Pageable pageable);
     
+    ApiResponse<CursorResponse<DirectMessageResponse>> getMessagesByCursor(
+            Long conversationId, Long currentUserId, String cursor, int size);
+    
     ApiResponse<DirectMessageResponse> getMessage(Long messageId, Long currentUserId);
     
     ApiResponse<DirectMessageResponse> editMessage(Long currentUserId, EditDirectMessageRequest request);
@@ -28,13 +32,22 @@ public interface DirectMessageService {
     
     ApiResponse<String> markAllMessagesAsRead(Long conversationId, Long currentUserId);
     
+    ApiResponse<Integer> markMessagesAsReadUpTo(Long conversationId, Long currentUserId, Long upToMessageId);
+    
     ApiResponse<PagedResponse<DirectMessageResponse>> searchMessages(
             Long conversationId, Long currentUserId, SearchDirectMessageRequest request);
     
+    ApiResponse<CursorResponse<DirectMessageResponse>> searchMessagesByCursor(
+            Long conversationId, Long currentUserId, String query, String cursor, int size);
+    
     ApiResponse<PagedResponse<DirectMessageResponse>> getMediaMessages(
             Long conversationId, Long currentUserId, 
             List<DirectMessage.MessageType> mediaTypes, Pageable pageable);
     
+    ApiResponse<CursorResponse<DirectMessageResponse>> getMediaMessagesByCursor(
+            Long conversationId, Long currentUserId, 
+            List<DirectMessage.MessageType> mediaTypes, String cursor, int size);
+    
     ApiResponse<List<DirectMessageResponse>> getNewMessages(
             Long conversationId, Long currentUserId, LocalDateTime after);
     
@@ -1,5 +1,6 @@
 package com.example.livestream_apd.domain.service;
 
+import com.example.livestream_apd.infrastructure.service.MailDispatcher;
 import com.example.livestream_apd.utils.TimeUtil;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
@@ -22,6 +23,7 @@ import java.util.concurrent.CompletableFuture;
 
 public class EmailService {
     private final JavaMailSender mailSender;
+    private final MailDispatcher mailDispatcher;
 
     @Value("${app.email.from}")
     private String fromEmail;
@@ -37,83 +39,19 @@ public class EmailService {
 
     public CompletableFuture<Boolean> sendEmailVerificationOtp(String toEmail, String fullName,
                                                         String otpCode, String token) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                MimeMessage message = mailSender.createMimeMessage();
-                MimeMessageHelper messageHelper = new MimeMessageHelper(message, true, "UTF-8");
-                messageHelper.setFrom(fromEmail, fromName);
-                messageHelper.setTo(toEmail);
-                messageHelper.setSubject("Email OTP");
-                String htmlContent = createEmailVerificationTemplate(fullName, otpCode, token);
-                messageHelper.setText(htmlContent, true);
-                mailSender.send(message);
-                log.info("Gửi thành công đến {}", toEmail);
-                return true;
-            } catch (Exception e) {
-                log.error("Lỗi gửi email {}", toEmail, e);
-                return false;
-            }
-        });
+        return send(toEmail, "Email OTP", createEmailVerificationTemplate(fullName, otpCode, token));
     }
 
     public CompletableFuture<Boolean> sendWelcomeEmail(String toEmail, String fullName){
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                MimeMessage message = mailSender.createMimeMessage();
-                MimeMessageHelper messageHelper = new MimeMessageHelper(message, true, "UTF-8");
-                messageHelper.setFrom(fromEmail, fromName);
-                messageHelper.setTo(toEmail);
-                messageHelper.setSubject("Chào mừng đến với Livestream");
-                String htmlContent = createWelcomeTemplate(fullName);
-                messageHelper.setText(htmlContent, true);
-                mailSender.send(message);
-                log.info("Gửi thành công đến {}", toEmail);
-                return true;
-            } catch (Exception e) {
-                log.error("Lỗi gửi email {}", toEmail, e);
-                return false;
-            }
-        });
+        return send(toEmail, "Chào mừng đến với Livestream", createWelcomeTemplate(fullName));
     }
 
     public CompletableFuture<Boolean> sendResetPasswordEmail(String toEmail, String fullName, String otpCode, String token) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                MimeMessage message = mailSender.createMimeMessage();
-                MimeMessageHelper messageHelper = new MimeMessageHelper(message, true, "UTF-8");
-                messageHelper.setFrom(fromEmail, fromName);
-                messageHelper.setTo(toEmail);
-                messageHelper.setSubject("Reset Password");
-                String htmlContent = createPasswordResetTemplate(fullName, otpCode, token);
-                messageHelper.setText(htmlContent, true);
-                mailSender.send(message);
-                log.info("Gửi thành công đến {}", toEmail);
-                return true;
-            } catch (Exception e){
-                log.error("Lỗi gửi email {}", toEmail, e);
-                return false;
-            }
-        });
+        return send(toEmail, "Reset Password", createPasswordResetTemplate(fullName, otpCode, token));
     }
 
     public CompletableFuture<Boolean> sendPasswordChangeConfirmation(String toEmail, String fullName) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                MimeMessage message = mailSender.createMimeMessage();
-                MimeMessageHelper messageHelper = new MimeMessageHelper(message, true, "UTF-8");
-                messageHelper.setFrom(fromEmail, fromName);
-                messageHelper.setTo(toEmail);
-                messageHelper.setSubject("Mật khẩu đã được thay đổi");
-                String htmlContent = createWelcomeTemplate(fullName);
-                messageHelper.setText(htmlContent, true);
-                mailSender.send(message);
-                log.info("Gửi thành công đến {}", toEmail);
-                return true;
-            } catch (Exception e) {
-                log.error("Lỗi gửi email {}", toEmail, e);
-                return false;
-            }
-        });
+        return send(toEmail, "Mật khẩu đã được thay đổi", createWelcomeTemplate(fullName));
     }
 
     private String createEmailVerificationTemplate(String fullName, String otpCode, String token) {
@@ -350,7 +288,7 @@ public class EmailService {
         );
     }
 
-    public void sendWithdrawOTP(String email, String fullName, String otpCode, String amount) {
+    public CompletableFuture<Boolean> sendWithdrawOTP(String email, String fullName, String otpCode, String amount) {
         String subject = "Mã OTP xác thực rút tiền - Live Hungbao";
         String body = String.format(
                 "<!DOCTYPE html>" +
@@ -402,18 +340,25 @@ public class EmailService {
                 fullName, amount, otpCode, TimeUtil.nowVietNam().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"))
         );
 
+        return send(email, subject, body);
+    }
+
+    /**
+     * Builds the message on the calling thread and hands it to the mail workers; SMTP
+     * I/O never runs on the request thread or the common pool.
+     */
+    private CompletableFuture<Boolean> send(String toEmail, String subject, String htmlContent) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper messageHelper = new MimeMessageHelper(message, true, "UTF-8");
             messageHelper.setFrom(fromEmail, fromName);
-            messageHelper.setTo(email);
+            messageHelper.setTo(toEmail);
             messageHelper.setSubject(subject);
-            messageHelper.setText(body, true);
-            mailSender.send(message);
-            log.info("OTP withdrawal email sent successfully to {}", email);
+            messageHelper.setText(htmlContent, true);
+            return mailDispatcher.dispatch(message, toEmail);
         } catch (MessagingException | UnsupportedEncodingException e) {
-            log.error("Error sending OTP withdrawal email to {}", email, e);
-            throw new RuntimeException("Failed to send OTP email", e);
+            log.error("Lỗi gửi email {}", toEmail, e);
+            return CompletableFuture.completedFuture(false);
         }
     }
 }
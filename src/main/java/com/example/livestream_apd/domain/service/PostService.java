@@ -3,6 +3,8 @@ package com.example.livestream_apd.domain.service;
 
 import com.example.livestream_apd.application.dto.request.CreatePostRequest;
 import com.example.livestream_apd.application.dto.request.UpdatePostRequest;
+import com.example.livestream_apd.application.dto.response.CommentResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.PostDetailResponse;
 import com.example.livestream_apd.application.dto.response.PostResponse;
 import com.example.livestream_apd.domain.entity.User;
@@ -13,6 +15,7 @@ public interface PostService {
     PostResponse createPost (User currentUser, CreatePostRequest createPostRequest);
     Page<PostResponse> getTimelinePosts (User currentUser, Pageable pageable);
     PostDetailResponse getPostById(User currentUser, Long postId);
+    CursorResponse<CommentResponse> getCommentReplies(User currentUser, Long postId, Long commentId, String cursor, int size);
     PostResponse updatePost(User currentUser, Long postId, UpdatePostRequest updatePostRequest);
     void deletePost(User currentUser, Long postId);
 
@@ -3,24 +3,44 @@ package com.example.livestream_apd.domain.service;
 import com.example.livestream_apd.application.dto.response.ApiResponse;
 import com.example.livestream_apd.application.dto.response.FollowResponse;
 import com.example.livestream_apd.application.dto.response.UserResponse;
+import com.example.livestream_apd.application.dto.response.UserSuggestionResponse;
 import com.example.livestream_apd.application.dto.request.SearchUserRequest;
 import com.example.livestream_apd.application.dto.request.UpdateProfileRequest;
 import com.example.livestream_apd.domain.entity.User;
+import com.example.livestream_apd.domain.entity.UserSuggestion;
 import com.example.livestream_apd.domain.repository.UserRepository;
+import com.example.livestream_apd.infrastructure.service.FollowGraph;
+import com.example.livestream_apd.infrastructure.service.HomeTimelineStore;
+import com.example.livestream_apd.infrastructure.service.UserSuggestionEngine;
 import com.example.livestream_apd.utils.TimeUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserService {
     private final UserRepository userRepository;
+    private final HomeTimelineStore homeTimelineStore;
+    private final FollowGraph followGraph;
+    private final UserSuggestionEngine userSuggestionEngine;
+
+    // Largest suggestion list a request may ask for; matches the stored list size
+    @Value("${app.suggestions.size:30}")
+    private int maxSuggestions;
+
     public ApiResponse <UserResponse> getUserProfile(Long userId) {
         try{
             User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
@@ -99,7 +119,8 @@ public class UserService {
         try{
             User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
             if (!userId.equals(currentUserId) && user.getIsPrivate()){
-                boolean isFollowing = userRepository.isFollowing(currentUserId,userId);
+                // Access check reads the database; the cached follow graph only feeds list display flags
+                boolean isFollowing = currentUserId != null && userRepository.isFollowing(currentUserId, userId);
                 if (!isFollowing){
                     UserResponse userResponse = mapPublicUserResponse(user);
                     return ApiResponse.success(userResponse);
@@ -144,6 +165,9 @@ public class UserService {
             
             userRepository.save(currentUser);
             userRepository.save(targetUser);
+            homeTimelineStore.invalidate(currentUserId);
+            followGraph.onFollowed(currentUserId, targetUserId);
+            userSuggestionEngine.onFollowGraphChanged(currentUserId);
             
             return ApiResponse.success("Đã follow thành công");
         }catch (Exception e){
@@ -183,6 +207,9 @@ public class UserService {
             
             userRepository.save(currentUser);
             userRepository.save(targetUser);
+            homeTimelineStore.invalidate(currentUserId);
+            followGraph.onUnfollowed(currentUserId, targetUserId);
+            userSuggestionEngine.onFollowGraphChanged(currentUserId);
             
             return ApiResponse.success("Đã unfollow thành công");
         }catch (Exception e){
@@ -199,7 +226,7 @@ public class UserService {
             }
             Pageable pageable = PageRequest.of(page, size);
             Page<User> followers = userRepository.findFollowersByUserId(userId, pageable);
-            Page<FollowResponse> followResponses = followers.map(follower -> mapToFollowResponse(follower,currentUserId));
+            Page<FollowResponse> followResponses = mapToFollowResponses(followers, currentUserId);
             return ApiResponse.success(followResponses);
         }catch (Exception e){
             log.error("Không thể lấy danh sách follower");
@@ -215,7 +242,7 @@ public class UserService {
             }
             Pageable pageable = PageRequest.of(page, size);
             Page<User> following = userRepository.findFollowingByUserId(userId, pageable);
-            Page<FollowResponse> followResponses = following.map(followedUser -> mapToFollowResponse(followedUser,currentUserId));
+            Page<FollowResponse> followResponses = mapToFollowResponses(following, currentUserId);
             return ApiResponse.success(followResponses);
         }catch (Exception e){
             log.error("Không thể lấy danh sách follower");
@@ -227,15 +254,22 @@ public class UserService {
         try{
             Pageable pageable = PageRequest.of(request.getPage(), request.getSize());
             Page<User> users = userRepository.searchUsers(request.getQuery(),pageable);
-            Page<UserResponse> userResponses = users.map(user ->{
-                if (user.getIsPrivate() && !user.getId().equals(currentUserId)){
-                    boolean isFollowing = userRepository.isFollowing(currentUserId,user.getId());
-                    if (!isFollowing){
-                        return mapPublicUserResponse(user);
-                    }
+            // Revealing a private profile is an access check, so it asks the database rather than the cached follow graph
+            List<Long> privateIds = users.getContent().stream()
+                    .filter(user -> user.getIsPrivate() && !user.getId().equals(currentUserId))
+                    .map(User::getId)
+                    .toList();
+            Set<Long> followedPrivateIds = privateIds.isEmpty() || currentUserId == null ? Set.of()
+                    : new HashSet<>(userRepository.findFollowingIdsAmong(currentUserId, privateIds));
+            List<UserResponse> content = new ArrayList<>(users.getNumberOfElements());
+            for (User user : users.getContent()){
+                if (user.getIsPrivate() && !user.getId().equals(currentUserId) && !followedPrivateIds.contains(user.getId())){
+                    content.add(mapPublicUserResponse(user));
+                } else {
+                    content.add(mapToUserResponse(user));
                 }
-                return mapToUserResponse(user);
-            });
+            }
+            Page<UserResponse> userResponses = new PageImpl<>(content, pageable, users.getTotalElements());
             return ApiResponse.success(userResponses);
         } catch (Exception e){
             log.error("Không thể tìm kiếm User");
@@ -243,6 +277,42 @@ public class UserService {
         }
     }
 
+    @Transactional(readOnly = true)
+    public ApiResponse<List<UserSuggestionResponse>> getUserSuggestions(Long currentUserId, int limit){
+        if (limit < 1){
+            return ApiResponse.error("Số lượng gợi ý phải lớn hơn 0");
+        }
+        limit = Math.min(limit, maxSuggestions);
+        try{
+            // Lists are recomputed in the background; drop anyone blocked since then
+            Set<Long> blocked = new HashSet<>(userRepository.findBlockRelatedIds(currentUserId));
+            List<UserSuggestion> suggestions = userSuggestionEngine.suggestionsFor(currentUserId);
+            if (suggestions.isEmpty()){
+                // Not computed yet (the engine has queued it); serve the most followed users meanwhile
+                List<UserSuggestionResponse> popular = userRepository.findUserSuggestions(currentUserId, limit + blocked.size()).stream()
+                        .filter(user -> !blocked.contains(user.getId()))
+                        .limit(limit)
+                        .map(user -> mapToSuggestionResponse(user, 0))
+                        .toList();
+                return ApiResponse.success(popular);
+            }
+            // ...and anyone followed since then
+            FollowGraph.Relationships relationships = followGraph.relationships(currentUserId,
+                    suggestions.stream().map(suggestion -> suggestion.getSuggestedUser().getId()).toList());
+            List<UserSuggestionResponse> responses = new ArrayList<>();
+            for (int i = 0; i < suggestions.size() && responses.size() < limit; i++){
+                if (!relationships.isFollowing(i) && !blocked.contains(suggestions.get(i).getSuggestedUser().getId())){
+                    UserSuggestion suggestion = suggestions.get(i);
+                    responses.add(mapToSuggestionResponse(suggestion.getSuggestedUser(), suggestion.getMutualCount()));
+                }
+            }
+            return ApiResponse.success(responses);
+        } catch (Exception e){
+            log.error("Không thể lấy gợi ý kết bạn cho user {}", currentUserId, e);
+            return ApiResponse.error("Không thể lấy gợi ý kết bạn" + e.getMessage());
+        }
+    }
+
     @Transactional
     public ApiResponse<String> blockUser(Long currentUserId, Long targetUserId){
         try{
@@ -269,6 +339,10 @@ public class UserService {
 
             userRepository.save(currentUser);
             userRepository.save(targetUser);
+            followGraph.onUnfollowed(currentUserId, targetUserId);
+            followGraph.onUnfollowed(targetUserId, currentUserId);
+            userSuggestionEngine.onFollowGraphChanged(currentUserId);
+            userSuggestionEngine.onFollowGraphChanged(targetUserId);
             return ApiResponse.success("Blocked thành công");
 
         } catch (Exception e){
@@ -336,7 +410,33 @@ public class UserService {
                 .build();
     }
 
-    private FollowResponse mapToFollowResponse(User user, Long currentUserId) {
+    private UserSuggestionResponse mapToSuggestionResponse(User user, Integer mutualCount) {
+        return UserSuggestionResponse.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .fullName(user.getFullName())
+                .avatarUrl(user.getAvatarUrl())
+                .isVerified(user.getIsVerified())
+                .followersCount(user.getFollowersCount())
+                .mutualCount(mutualCount)
+                .build();
+    }
+
+    // Relationship flags for the whole page come from one follow graph lookup
+    private Page<FollowResponse> mapToFollowResponses(Page<User> users, Long currentUserId) {
+        FollowGraph.Relationships relationships = followGraph.relationships(currentUserId, userIds(users.getContent()));
+        List<FollowResponse> content = new ArrayList<>(users.getNumberOfElements());
+        for (int i = 0; i < users.getNumberOfElements(); i++) {
+            content.add(mapToFollowResponse(users.getContent().get(i), relationships.isFollowing(i), relationships.isFollowedBy(i)));
+        }
+        return new PageImpl<>(content, users.getPageable(), users.getTotalElements());
+    }
+
+    private static List<Long> userIds(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private FollowResponse mapToFollowResponse(User user, boolean isFollowedByCurrentUser, boolean isFollowingCurrentUser) {
         return FollowResponse
                 .builder()
                 .username(user.getUsername())
@@ -344,8 +444,8 @@ public class UserService {
                 .avatarUrl(user.getAvatarUrl())
                 .bio(user.getBio())
                 .isVerified(user.getIsVerified())
-                .isFollowedByCurrentUser(userRepository.isFollowing(currentUserId,user.getId()))
-                .isFollowingCurrentUser(userRepository.isFollowing(user.getId(),currentUserId))
+                .isFollowedByCurrentUser(isFollowedByCurrentUser)
+                .isFollowingCurrentUser(isFollowingCurrentUser)
                 .isOnline(user.getIsOnline())
                 .followingCount(user.getFollowingCount())
                 .followersCount(user.getFollowersCount())
@@ -5,6 +5,7 @@ import com.example.livestream_apd.application.dto.request.ReactToMessageRequest;
 import com.example.livestream_apd.application.dto.request.SendMessageRequest;
 import com.example.livestream_apd.application.dto.request.TypingIndicatorRequest;
 import com.example.livestream_apd.application.dto.response.ChatMessageResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.UserSummaryResponse;
 import com.example.livestream_apd.domain.entity.ChatMessage;
 import com.example.livestream_apd.domain.entity.ChatRoom;
@@ -13,17 +14,32 @@ import com.example.livestream_apd.domain.entity.User;
 import com.example.livestream_apd.domain.repository.ChatMessageRepository;
 import com.example.livestream_apd.domain.repository.ChatRoomRepository;
 import com.example.livestream_apd.domain.service.ChatMessageService;
+import com.example.livestream_apd.infrastructure.ratelimit.RateLimitPolicy;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
+import com.example.livestream_apd.infrastructure.ratelimit.RateLimiter;
+import com.example.livestream_apd.infrastructure.service.ChatMessageWriteBehindWriter;
+import com.example.livestream_apd.infrastructure.service.ChatRoomHistoryCache;
+import com.example.livestream_apd.utils.CursorPaging;
+import com.example.livestream_apd.utils.TransactionCallbacks;
 import com.example.livestream_apd.utils.exceptions.ResourceForbiddenException;
 import com.example.livestream_apd.utils.exceptions.ResourceNotFoundException;
+import com.example.livestream_apd.utils.MessageCursor;
 import com.example.livestream_apd.utils.TimeUtil;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
 
 @Service
 @RequiredArgsConstructor
@@ -32,6 +48,23 @@ public class ChatMessageServiceImpl implements ChatMessageService {
 
     private final ChatMessageRepository chatMessageRepository;
     private final ChatRoomRepository chatRoomRepository;
+    private final ChatMessageWriteBehindWriter writeBehindWriter;
+    private final RateLimiter rateLimiter;
+    private final ChatRoomHistoryCache historyCache;
+    private final MessageSearchIndex searchIndex;
+
+    @Value("${app.rate-limit.chat-messages-per-minute:10}")
+    private int maxMessagesPerMinute;
+
+    @Value("${app.pagination.max-cursor-size:100}")
+    private int maxCursorSize;
+
+    private RateLimitPolicy sendMessageLimit;
+
+    @PostConstruct
+    public void init() {
+        sendMessageLimit = RateLimitPolicy.perMinute("chat-message", maxMessagesPerMinute);
+    }
 
     @Override
     @Transactional
@@ -44,16 +77,18 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         }
 
         // Check rate limiting - prevent spam
-        LocalDateTime oneMinuteAgo = TimeUtil.nowUtc().minusMinutes(1);
-        long recentMessageCount = chatMessageRepository.countByUserSince(currentUser, oneMinuteAgo);
-        if (recentMessageCount > 10) { // Max 10 messages per minute
+        if (!rateLimiter.tryAcquire(sendMessageLimit, currentUser.getId())) {
             throw new ResourceForbiddenException("Bạn đang gửi tin nhắn quá nhanh, vui lòng chậm lại");
         }
 
         ChatMessage parentMessage = null;
-        if (request.getParentMessageId() != null) {
-            parentMessage = chatMessageRepository.findById(request.getParentMessageId())
-                    .orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", request.getParentMessageId()));
+        Long parentMessageId = request.getParentMessageId();
+        if (parentMessageId != null) {
+            // A parent still queued for write-behind has no row yet, so it is referenced by id
+            parentMessage = writeBehindWriter.isPending(parentMessageId)
+                    ? chatMessageRepository.getReferenceById(parentMessageId)
+                    : chatMessageRepository.findById(parentMessageId)
+                            .orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", parentMessageId));
         }
 
         ChatMessage message = ChatMessage.builder()
@@ -65,20 +100,67 @@ public class ChatMessageServiceImpl implements ChatMessageService {
                 .metadata(request.getMetadata())
                 .build();
 
-        message = chatMessageRepository.save(message);
-        log.info("Message sent: {} by user: {} in room: {}", message.getId(), currentUser.getId(), chatRoom.getId());
+        // Every insert takes its id from the allocator, with or without write-behind, so no
+        // AUTO_INCREMENT value can land inside a block another node has reserved
+        message.setId(writeBehindWriter.nextId());
+        message.setCreatedAt(TimeUtil.nowUtc());
+        ChatMessageResponse response = mapToResponse(message);
+        if (writeBehindWriter.enqueue(message.getId(), currentUser.getId(), chatRoom.getId(), parentMessageId,
+                message.getContent(), message.getMessageType(), message.getMetadata(), message.getCreatedAt())) {
+            // Acknowledged now; the row is inserted by the next batched flush
+            log.debug("Message {} queued for write-behind by user: {} in room: {}", message.getId(), currentUser.getId(), chatRoom.getId());
+            historyCache.onMessageSent(response);
+            return response;
+        }
 
-        return mapToResponse(message);
+        if (writeBehindWriter.isEnabled()) {
+            log.warn("Write-behind queue full, persisting message synchronously in room: {}", chatRoom.getId());
+        }
+        writeBehindWriter.insertNow(message.getId(), currentUser.getId(), chatRoom.getId(), parentMessageId,
+                message.getContent(), message.getMessageType(), message.getMetadata(), message.getCreatedAt());
+        log.info("Message sent: {} by user: {} in room: {}", message.getId(), currentUser.getId(), chatRoom.getId());
+        TransactionCallbacks.afterCommit(() -> historyCache.onMessageSent(response));
+        return response;
     }
 
     @Override
     public Page<ChatMessageResponse> getMessagesInRoom(Long chatRoomId, Pageable pageable) {
+        // Hot rooms serve the newest page from the in-memory history buffer
+        Optional<Page<ChatMessageResponse>> cached = historyCache.getFirstPage(chatRoomId, pageable);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
                 .orElseThrow(() -> new ResourceNotFoundException("ChatRoom", "id", chatRoomId));
 
+        boolean firstPage = pageable.getPageNumber() == 0;
+        long generation = firstPage ? historyCache.beginLoad(chatRoomId) : 0;
+
         Page<ChatMessage> messages = chatMessageRepository.findByChatRoomIdAndIsDeletedFalseOrderByCreatedAtDesc(
                 chatRoomId, pageable);
-        return messages.map(this::mapToResponse);
+        Page<ChatMessageResponse> page = messages.map(this::mapToResponse);
+
+        // Queued messages are not in the table yet; the next read loads the room once they are
+        if (firstPage && !writeBehindWriter.hasPendingInRoom(chatRoomId)) {
+            historyCache.warm(chatRoomId, generation, page.getContent(), page.getTotalElements());
+        }
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorResponse<ChatMessageResponse> getMessagesInRoomByCursor(Long chatRoomId, String cursor, int size) {
+        if (!chatRoomRepository.existsById(chatRoomId)) {
+            throw new ResourceNotFoundException("ChatRoom", "id", chatRoomId);
+        }
+
+        MessageCursor position = MessageCursor.decode(cursor);
+        Slice<ChatMessage> messages = chatMessageRepository.findInRoomBefore(
+                chatRoomId, position.createdAt(), position.id(), CursorPaging.firstSlice(size, maxCursorSize));
+
+        return CursorResponse.fromSlice(messages, this::mapToResponse,
+                last -> MessageCursor.encode(last.getCreatedAt(), last.getId()));
     }
 
     @Override
@@ -94,8 +176,12 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         message.edit(request.getContent());
         message = chatMessageRepository.save(message);
         log.info("Message edited: {} by user: {}", messageId, currentUser.getId());
+        searchIndex.indexMessage(MessageSearchIndex.Kind.CHAT, message.getId(), message.getChatRoom().getId(),
+                message.getContent(), message.getCreatedAt());
 
-        return mapToResponse(message);
+        ChatMessageResponse response = mapToResponse(message);
+        TransactionCallbacks.afterCommit(() -> historyCache.onMessageUpdated(response));
+        return response;
     }
 
     @Override
@@ -111,6 +197,10 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         message.delete();
         chatMessageRepository.save(message);
         log.info("Message deleted: {} by user: {}", messageId, currentUser.getId());
+        searchIndex.deleteMessage(MessageSearchIndex.Kind.CHAT, messageId);
+
+        Long chatRoomId = message.getChatRoom().getId();
+        TransactionCallbacks.afterCommit(() -> historyCache.onMessageDeleted(chatRoomId, messageId));
     }
 
     @Override
@@ -128,7 +218,9 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         log.info("Reaction added to message: {} by user: {} type: {}", 
                 messageId, currentUser.getId(), request.getReactionType());
 
-        return mapToResponse(message);
+        ChatMessageResponse response = mapToResponse(message);
+        TransactionCallbacks.afterCommit(() -> historyCache.onMessageUpdated(response));
+        return response;
     }
 
     @Override
@@ -138,9 +230,12 @@ public class ChatMessageServiceImpl implements ChatMessageService {
                 .orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", messageId));
 
         message.removeReaction(reactionType);
-        chatMessageRepository.save(message);
+        message = chatMessageRepository.save(message);
         log.info("Reaction removed from message: {} by user: {} type: {}", 
                 messageId, currentUser.getId(), reactionType);
+
+        ChatMessageResponse response = mapToResponse(message);
+        TransactionCallbacks.afterCommit(() -> historyCache.onMessageUpdated(response));
     }
 
     @Override
@@ -168,6 +263,17 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
                 .orElseThrow(() -> new ResourceNotFoundException("ChatRoom", "id", chatRoomId));
 
+        Optional<MessageSearchIndex.SearchHits> hits =
+                searchIndex.search(MessageSearchIndex.Kind.CHAT, chatRoomId, keyword, pageable);
+        if (hits.isPresent()) {
+            List<Long> messageIds = hits.get().messageIds();
+            List<ChatMessageResponse> content = chatMessageRepository.findAllWithUserByIdIn(messageIds).stream()
+                    .sorted(Comparator.comparingInt(message -> messageIds.indexOf(message.getId())))
+                    .map(this::mapToResponse)
+                    .toList();
+            return new PageImpl<>(content, pageable, hits.get().totalHits());
+        }
+
         Page<ChatMessage> messages = chatMessageRepository.searchInChatRoom(chatRoom, keyword, pageable);
         return messages.map(this::mapToResponse);
     }
@@ -138,7 +138,7 @@ public class PaymentServiceImpl implements PaymentService {
                 otpCode, 
                 request.getAmount().toString()
             );
-            log.info("OTP email sent for withdrawal transaction: {}", transactionId);
+            log.info("OTP email queued for withdrawal transaction: {}", transactionId);
         } catch (Exception e) {
             log.error("Failed to send OTP email for transaction: {}", transactionId, e);
             // Don't fail the transaction if email fails
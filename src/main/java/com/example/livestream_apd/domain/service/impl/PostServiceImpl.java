@@ -6,17 +6,31 @@ import com.example.livestream_apd.application.dto.request.UpdatePostRequest;
 import com.example.livestream_apd.domain.entity.*;
 import com.example.livestream_apd.domain.repository.*;
 import com.example.livestream_apd.domain.service.PostService;
+import com.example.livestream_apd.infrastructure.service.HomeTimelineStore;
+import com.example.livestream_apd.infrastructure.service.PostCounterAggregator;
+import com.example.livestream_apd.infrastructure.service.TrendingPostRanker;
+import com.example.livestream_apd.utils.CursorPaging;
+import com.example.livestream_apd.utils.exceptions.BadRequestException;
 import com.example.livestream_apd.utils.exceptions.ResourceForbiddenException;
 import com.example.livestream_apd.utils.exceptions.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +43,15 @@ public class PostServiceImpl implements PostService {
     private final LikeRepository likeRepository;
     private final CommentRepository commentRepository;
     private final ShareRepository shareRepository;
+    private final HomeTimelineStore homeTimelineStore;
+    private final TrendingPostRanker trendingPostRanker;
+    private final PostCounterAggregator postCounterAggregator;
+
+    @Value("${app.post.comments.preview-replies:3}")
+    private int previewReplies;
+
+    @Value("${app.pagination.max-cursor-size:100}")
+    private int maxCursorSize;
 
     @Override
     @Transactional
@@ -43,14 +66,35 @@ public class PostServiceImpl implements PostService {
                 .isPublic(createPostRequest.isPublic())
                 .build();
         Post savedPost = postRepository.save(post);
+        if (savedPost.getIsPublic()) {
+            homeTimelineStore.onPostPublished(savedPost);
+        }
         return mapPostToResponse(savedPost, currentUser);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<PostResponse> getTimelinePosts (User currentUser, Pageable pageable){
-        Page<Post> posts = postRepository.findTimelineForUser(currentUser, pageable);
-        return posts.map(post -> mapPostToResponse(post, currentUser));
+        Optional<HomeTimelineStore.TimelineSlice> slice = homeTimelineStore.read(currentUser.getId(), pageable);
+        if (slice.isEmpty()) {
+            return mapPostPageToResponse(postRepository.findTimelineForUser(currentUser, pageable), currentUser);
+        }
+
+        List<Long> postIds = slice.get().postIds();
+        Map<Long, Post> postsById = postIds.isEmpty() ? Map.of() : postRepository.findAllWithUserByIdIn(postIds)
+                .stream().collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>(postIds.size());
+        List<Long> staleIds = new ArrayList<>();
+        for (Long postId : postIds) {
+            Post post = postsById.get(postId);
+            if (post == null || !post.getIsPublic()) {
+                staleIds.add(postId);
+            } else {
+                posts.add(post);
+            }
+        }
+        homeTimelineStore.evict(currentUser.getId(), staleIds);
+        return new PageImpl<>(mapPostsToResponse(posts, currentUser), pageable, slice.get().total());
     }
 
     @Override
@@ -64,8 +108,7 @@ public class PostServiceImpl implements PostService {
         Page<Comment> comments = commentRepository
                     .findByPostAndParentCommentIsNullOrderByIsPinnedDescCreatedAtDesc
                     (post,Pageable.ofSize(10));
-        List<CommentResponse> commentResponses = comments.getContent().stream()
-                .map(comment -> mapToCommentResponse(comment,currentUser)).collect(Collectors.toList());
+        List<CommentResponse> commentResponses = mapCommentsToResponse(comments.getContent(), currentUser, true);
         boolean isLiked = likeRepository.existsByUserAndPost(currentUser,post);
         boolean isShared = shareRepository.findByUserAndPost(currentUser,post).isPresent();
         return PostDetailResponse
@@ -76,17 +119,45 @@ public class PostServiceImpl implements PostService {
                 .mediaUrls(post.getMediaUrls())
                 .location(post.getLocation())
                 .tags(post.getTags())
-                .likeCount(post.getLikeCount())
+                .likeCount(postCounterAggregator.likeCount(post))
                 .commentCount(post.getCommentCount())
-                .shareCount(post.getShareCount())
+                .shareCount(postCounterAggregator.shareCount(post))
                 .isPublic(post.getIsPublic())
                 .isLiked(isLiked)
                 .isShared(isShared)
+                .comments(commentResponses)
                 .createdAt(post.getCreatedAt())
                 .updatedAt(post.getUpdatedAt())
                 .build();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorResponse<CommentResponse> getCommentReplies(User currentUser, Long postId, Long commentId, String cursor, int size){
+        Comment parent = commentRepository.findById(commentId).orElseThrow(()
+                -> new ResourceNotFoundException("comment","id",commentId));
+        Post post = parent.getPost();
+        if (post == null || !post.getId().equals(postId)){
+            throw new ResourceNotFoundException("comment","id",commentId);
+        }
+        if (!post.getIsPublic() && !post.getUser().getId().equals(currentUser.getId())){
+            throw new ResourceForbiddenException("Không có quyền truy cập");
+        }
+
+        Slice<Comment> replies = commentRepository.findRepliesAfter(commentId, decodeReplyCursor(cursor),
+                CursorPaging.firstSlice(size, maxCursorSize));
+        String nextCursor = null;
+        if (replies.hasNext()) {
+            nextCursor = String.valueOf(replies.getContent().get(replies.getNumberOfElements() - 1).getId());
+        }
+        return CursorResponse.<CommentResponse>builder()
+                .content(mapCommentsToResponse(replies.getContent(), currentUser, false))
+                .size(replies.getNumberOfElements())
+                .nextCursor(nextCursor)
+                .hasNext(replies.hasNext())
+                .build();
+    }
+
     @Override
     @Transactional
     public PostResponse updatePost(User currentUser, Long postId, UpdatePostRequest updatePostRequest){
@@ -106,10 +177,19 @@ public class PostServiceImpl implements PostService {
         if (updatePostRequest.getTags() != null){
             post.setTags(updatePostRequest.getTags());
         }
+        boolean wasPublic = post.getIsPublic();
         if (updatePostRequest.getIsPublic() != null){
             post.setIsPublic(updatePostRequest.getIsPublic());
         }
         Post updatedPost = postRepository.save(post);
+        if (wasPublic != updatedPost.getIsPublic()) {
+            if (updatedPost.getIsPublic()) {
+                homeTimelineStore.onPostPublished(updatedPost);
+            } else {
+                homeTimelineStore.onPostHidden(updatedPost);
+                trendingPostRanker.remove(updatedPost.getId());
+            }
+        }
         return mapPostToResponse(updatedPost, currentUser);
     }
 
@@ -120,6 +200,10 @@ public class PostServiceImpl implements PostService {
         if (!post.getUser().getId().equals(currentUser.getId())){
             throw new ResourceForbiddenException("Không có quyền xoá bài post này");
         }
+        if (post.getIsPublic()) {
+            homeTimelineStore.onPostHidden(post);
+        }
+        trendingPostRanker.remove(post.getId());
         postRepository.delete(post);
     }
 
@@ -137,8 +221,8 @@ public class PostServiceImpl implements PostService {
                     .user(currentUser)
                     .build();
             likeRepository.save(like);
-            post.setLikeCount(post.getLikeCount()+1);
-            postRepository.save(post);
+            postCounterAggregator.addLikes(post.getId(), 1);
+            trendingPostRanker.record(post.getId(), TrendingPostRanker.Engagement.LIKE);
         }
         return mapPostToResponse(post, currentUser);
     }
@@ -149,10 +233,8 @@ public class PostServiceImpl implements PostService {
         Post post = postRepository.findById(postId).orElseThrow(() -> new ResourceNotFoundException("post","id",postId));
         Like like = likeRepository.findByUserAndPost(currentUser,post).orElseThrow(() -> new ResourceNotFoundException("post","id",postId));
         likeRepository.delete(like);
-        if (post.getLikeCount() > 0){
-            post.setLikeCount(post.getLikeCount()-1);
-            postRepository.save(post);
-        }
+        postCounterAggregator.addLikes(post.getId(), -1);
+        trendingPostRanker.recordUnlike(post.getId(), like.getCreatedAt(), post.getCreatedAt());
         return mapPostToResponse(post, currentUser);
     }
 
@@ -178,16 +260,33 @@ public class PostServiceImpl implements PostService {
                 .platform(platform)
                 .build();
         shareRepository.save(share);
-        post.setShareCount(post.getShareCount()+1);
-        postRepository.save(post);
+        postCounterAggregator.addShares(post.getId(), 1);
+        trendingPostRanker.record(post.getId(), TrendingPostRanker.Engagement.SHARE);
         return mapPostToResponse(post, currentUser);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<PostResponse> getTrendingPosts(User currentUser, Pageable pageable){
-        Page<Post> posts = postRepository.findTrendingPosts(pageable);
-        return posts.map(post -> mapPostToResponse(post, currentUser));
+        List<Long> ranking = trendingPostRanker.ranking();
+        if (ranking.isEmpty()) {
+            // Nothing ranked yet (startup, or no recent engagement): fall back to the stored counters
+            return mapPostPageToResponse(postRepository.findTrendingPosts(pageable), currentUser);
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ranking.size());
+        int to = Math.min(from + pageable.getPageSize(), ranking.size());
+        List<Long> postIds = ranking.subList(from, to);
+        Map<Long, Post> postsById = postIds.isEmpty() ? Map.of() : postRepository.findAllWithUserByIdIn(postIds)
+                .stream().collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>(postIds.size());
+        for (Long postId : postIds) {
+            Post post = postsById.get(postId);
+            if (post != null && post.getIsPublic()) {
+                posts.add(post);
+            }
+        }
+        return new PageImpl<>(mapPostsToResponse(posts, currentUser), pageable, ranking.size());
     }
 
     @Override
@@ -201,12 +300,33 @@ public class PostServiceImpl implements PostService {
         } else {
             posts = postRepository.findByUserAndIsPublicTrueOrderByCreatedAtDesc(user, pageable);
         }
-        return posts.map(post -> mapPostToResponse(post, currentUser));
+        return mapPostPageToResponse(posts, currentUser);
+    }
+
+    private Page<PostResponse> mapPostPageToResponse(Page<Post> posts, User currentUser){
+        return new PageImpl<>(mapPostsToResponse(posts.getContent(), currentUser), posts.getPageable(), posts.getTotalElements());
+    }
+
+    // Resolves isLiked/isShared for a whole page with one query each instead of two per post
+    private List<PostResponse> mapPostsToResponse(List<Post> posts, User currentUser){
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> postIds = posts.stream().map(Post::getId).collect(Collectors.toList());
+        Set<Long> likedPostIds = new HashSet<>(likeRepository.findLikedPostIds(currentUser, postIds));
+        Set<Long> sharedPostIds = new HashSet<>(shareRepository.findSharedPostIds(currentUser, postIds));
+        return posts.stream()
+                .map(post -> mapPostToResponse(post, likedPostIds.contains(post.getId()), sharedPostIds.contains(post.getId())))
+                .collect(Collectors.toList());
     }
 
     private PostResponse mapPostToResponse(Post post, User currentUser){
         boolean isLiked = likeRepository.existsByUserAndPost(currentUser, post);
         boolean isShared = shareRepository.findByUserAndPost(currentUser,post).isPresent();
+        return mapPostToResponse(post, isLiked, isShared);
+    }
+
+    private PostResponse mapPostToResponse(Post post, boolean isLiked, boolean isShared){
         return PostResponse
                 .builder()
                 .id(post.getId())
@@ -218,9 +338,9 @@ public class PostServiceImpl implements PostService {
                 .isLiked(isLiked)
                 .isShared(isShared)
                 .isPublic(post.getIsPublic())
-                .likeCount(post.getLikeCount())
+                .likeCount(postCounterAggregator.likeCount(post))
                 .commentCount(post.getCommentCount())
-                .shareCount(post.getShareCount())
+                .shareCount(postCounterAggregator.shareCount(post))
                 .createdAt(post.getCreatedAt())
                 .updatedAt(post.getUpdatedAt())
                 .build();
@@ -243,29 +363,78 @@ public class PostServiceImpl implements PostService {
         }
     }
 
-    private CommentResponse mapToCommentResponse(Comment comment, User currentUser){
-        boolean isLiked = false;
-        for (Like like : comment.getLikes()) {
-            if (like.getUser().getId().equals(currentUser.getId())) {
-                isLiked = true;
-                break;
+    /**
+     * Maps one level of a comment tree: every comment gets its reply count and, with
+     * {@code withPreview}, its first replies. Deeper levels and further replies are read
+     * through {@link #getCommentReplies}. Reply counts, preview replies and isLiked take
+     * one query each for the whole page.
+     */
+    private List<CommentResponse> mapCommentsToResponse(List<Comment> comments, User currentUser, boolean withPreview){
+        if (comments.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> commentIds = comments.stream().map(Comment::getId).collect(Collectors.toList());
+        Map<Long, Long> replyCounts = new HashMap<>();
+        for (Object[] row : commentRepository.countRepliesByParentIds(commentIds)) {
+            replyCounts.put((Long) row[0], (Long) row[1]);
+        }
+
+        Map<Long, List<Comment>> previews = new HashMap<>();
+        if (withPreview && previewReplies > 0 && !replyCounts.isEmpty()) {
+            List<Long> replyIds = commentRepository.findFirstReplyIds(replyCounts.keySet(), previewReplies);
+            if (!replyIds.isEmpty()) {
+                // Ordered by id, so each parent's preview stays oldest first
+                for (Comment reply : commentRepository.findAllWithUserByIdIn(replyIds)) {
+                    previews.computeIfAbsent(reply.getParentComment().getId(), id -> new ArrayList<>()).add(reply);
+                }
             }
         }
-            List<CommentResponse> replies = new ArrayList<>();
-            if (comment.getReplies() != null && !comment.getReplies().isEmpty()){
-                replies = comment.getReplies().stream()
-                        .map(reply -> mapToCommentResponse(reply,currentUser)).collect(Collectors.toList());
+
+        List<Long> allIds = new ArrayList<>(commentIds);
+        previews.values().forEach(replies -> replies.forEach(reply -> allIds.add(reply.getId())));
+        Set<Long> likedCommentIds = new HashSet<>(likeRepository.findLikedCommentIds(currentUser, allIds));
+
+        List<CommentResponse> responses = new ArrayList<>(comments.size());
+        for (Comment comment : comments) {
+            long replyCount = replyCounts.getOrDefault(comment.getId(), 0L);
+            List<Comment> preview = previews.getOrDefault(comment.getId(), List.of());
+            List<CommentResponse> replies = preview.stream()
+                    .map(reply -> mapToCommentResponse(reply, likedCommentIds.contains(reply.getId()), null, null))
+                    .collect(Collectors.toList());
+            String repliesCursor = null;
+            if (replyCount > preview.size()) {
+                repliesCursor = preview.isEmpty() ? "" : String.valueOf(preview.get(preview.size() - 1).getId());
             }
-            return CommentResponse
-                    .builder()
-                    .id(comment.getId())
-                    .user(mapUserToResponse(comment.getUser()))
-                    .content(comment.getContent())
-                    .likeCount(comment.getLikeCount())
-                    .isPinned(comment.getIsPinned())
-                    .isLiked(isLiked)
-                    .createdAt(comment.getCreatedAt())
-                    .replies(replies)
-                    .build();
+            CommentResponse response = mapToCommentResponse(comment, likedCommentIds.contains(comment.getId()), replyCount, repliesCursor);
+            response.setReplies(replies);
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private CommentResponse mapToCommentResponse(Comment comment, boolean isLiked, Long replyCount, String repliesCursor){
+        return CommentResponse
+                .builder()
+                .id(comment.getId())
+                .user(mapUserToResponse(comment.getUser()))
+                .content(comment.getContent())
+                .likeCount(comment.getLikeCount())
+                .isPinned(comment.getIsPinned())
+                .isLiked(isLiked)
+                .createdAt(comment.getCreatedAt())
+                .replyCount(replyCount)
+                .repliesCursor(repliesCursor)
+                .build();
+    }
+
+    private static Long decodeReplyCursor(String cursor){
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor không hợp lệ", e);
         }
+    }
 }
@@ -0,0 +1,118 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * In-memory login throttle for single-node deployments. At most {@code max-tracked-keys}
+ * keys are tracked per policy, so a flood of keys cannot exhaust memory. A new key
+ * beyond that evicts the oldest tracked one, so the newest failures are always counted;
+ * idle keys are also evicted every minute.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "mode", havingValue = "local", matchIfMissing = true)
+public class LocalLoginThrottle implements LoginThrottle {
+
+    // policy name -> key -> failures
+    private final Map<String, TrackedKeys> counters = new ConcurrentHashMap<>();
+    private final Map<String, Long> resetAfterByPolicy = new ConcurrentHashMap<>();
+
+    @Value("${app.login-throttle.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+
+    @Override
+    public long lockedForMillis(LoginThrottlePolicy policy, String key) {
+        FailureCounter counter = tracked(policy).byKey.get(key);
+        return counter != null ? counter.lockedForMillis(System.currentTimeMillis()) : 0;
+    }
+
+    @Override
+    public void recordFailure(LoginThrottlePolicy policy, String key) {
+        TrackedKeys tracked = tracked(policy);
+        FailureCounter counter = tracked.byKey.get(key);
+        if (counter == null) {
+            boolean[] created = new boolean[1];
+            counter = tracked.byKey.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return new FailureCounter();
+            });
+            if (created[0]) {
+                tracked.insertionOrder.add(new AbstractMap.SimpleImmutableEntry<>(key, counter));
+                tracked.evictOldestOverLimit(maxTrackedKeys);
+            }
+        }
+        counter.recordFailure(System.currentTimeMillis(), policy);
+    }
+
+    @Override
+    public void reset(LoginThrottlePolicy policy, String key) {
+        tracked(policy).byKey.remove(key);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleCounters() {
+        long now = System.currentTimeMillis();
+        counters.forEach((policy, tracked) -> {
+            long resetAfter = resetAfterByPolicy.getOrDefault(policy, 0L);
+            tracked.byKey.values().removeIf(counter -> counter.isIdle(now, resetAfter));
+            // Drops queue entries whose counter was evicted, reset or replaced
+            tracked.insertionOrder.removeIf(entry -> tracked.byKey.get(entry.getKey()) != entry.getValue());
+        });
+    }
+
+    private TrackedKeys tracked(LoginThrottlePolicy policy) {
+        resetAfterByPolicy.putIfAbsent(policy.name(), policy.resetAfter().toMillis());
+        return counters.computeIfAbsent(policy.name(), name -> new TrackedKeys());
+    }
+
+    private static final class TrackedKeys {
+        private final Map<String, FailureCounter> byKey = new ConcurrentHashMap<>();
+        // Oldest first; may hold entries already gone from byKey, which are skipped
+        private final Queue<Map.Entry<String, FailureCounter>> insertionOrder = new ConcurrentLinkedQueue<>();
+
+        void evictOldestOverLimit(int maxTrackedKeys) {
+            while (byKey.size() > maxTrackedKeys) {
+                Map.Entry<String, FailureCounter> oldest = insertionOrder.poll();
+                if (oldest == null) {
+                    return;
+                }
+                // Only removes the key if it still maps to the counter queued for it
+                byKey.remove(oldest.getKey(), oldest.getValue());
+            }
+        }
+    }
+
+    private static final class FailureCounter {
+        private int failures;
+        private long lastFailureAt;
+        private long lockedUntil;
+
+        synchronized long lockedForMillis(long now) {
+            return Math.max(0, lockedUntil - now);
+        }
+
+        synchronized void recordFailure(long now, LoginThrottlePolicy policy) {
+            if (now - lastFailureAt > policy.resetAfter().toMillis()) {
+                failures = 0;
+            }
+            failures++;
+            lastFailureAt = now;
+            long lockout = policy.lockoutMillis(failures);
+            if (lockout > 0) {
+                lockedUntil = now + lockout;
+            }
+        }
+
+        synchronized boolean isIdle(long now, long resetAfter) {
+            return now - lastFailureAt > resetAfter && lockedUntil <= now;
+        }
+    }
+}
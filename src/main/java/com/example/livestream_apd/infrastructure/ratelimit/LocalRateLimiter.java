@@ -0,0 +1,67 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory limiter for single-node deployments. Each user gets its own counter
+ * object, so contention is limited to concurrent actions by the same user.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "mode", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    // policy name -> userId -> counter
+    private final Map<String, Map<Long, WindowCounter>> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(RateLimitPolicy policy, long userId) {
+        WindowCounter counter = counters
+                .computeIfAbsent(policy.name(), name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(userId, id -> new WindowCounter());
+        return counter.tryAcquire(System.currentTimeMillis(), policy.window().toMillis(), policy.permits());
+    }
+
+    /**
+     * Drops counters that have not been touched for two windows; they would
+     * contribute nothing to the estimate anyway.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleCounters() {
+        long now = System.currentTimeMillis();
+        counters.values().forEach(byUser ->
+                byUser.values().removeIf(counter -> counter.isIdle(now)));
+    }
+
+    private static final class WindowCounter {
+        private long windowMillis = 1;
+        private long currentWindow;
+        private int currentCount;
+        private int previousCount;
+
+        synchronized boolean tryAcquire(long now, long windowMillis, int permits) {
+            this.windowMillis = windowMillis;
+            long window = now / windowMillis;
+            if (window != currentWindow) {
+                previousCount = window == currentWindow + 1 ? currentCount : 0;
+                currentCount = 0;
+                currentWindow = window;
+            }
+
+            double elapsed = (double) (now % windowMillis) / windowMillis;
+            if (previousCount * (1 - elapsed) + currentCount >= permits) {
+                return false;
+            }
+            currentCount++;
+            return true;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return now / windowMillis > currentWindow + 1;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Brute-force defence for the login endpoint, checked before the user lookup and the
+ * BCrypt comparison. Failures are counted per client IP and per submitted account
+ * identifier; either key past its free attempts is locked out with exponential backoff.
+ * A successful login clears the account's failures but not the IP's, so one valid
+ * account cannot be used to reset an IP that is guessing others.
+ *
+ * <p>The password check is timed, and {@code auth.login.password.check.saved} estimates
+ * the CPU time throttled attempts would have spent in it.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginAttemptGuard {
+
+    private final LoginThrottle loginThrottle;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.login-throttle.ip-free-attempts:20}")
+    private int ipFreeAttempts;
+
+    @Value("${app.login-throttle.account-free-attempts:5}")
+    private int accountFreeAttempts;
+
+    @Value("${app.login-throttle.base-delay:1000}")
+    private long baseDelay;
+
+    @Value("${app.login-throttle.max-lockout:900000}")
+    private long maxLockout;
+
+    @Value("${app.login-throttle.reset-after:900000}")
+    private long resetAfter;
+
+    private LoginThrottlePolicy ipPolicy;
+    private LoginThrottlePolicy accountPolicy;
+    private Counter ipThrottledCounter;
+    private Counter accountThrottledCounter;
+    private Timer passwordCheckTimer;
+
+    @PostConstruct
+    public void init() {
+        ipPolicy = new LoginThrottlePolicy("login-ip", ipFreeAttempts,
+                Duration.ofMillis(baseDelay), Duration.ofMillis(maxLockout), Duration.ofMillis(resetAfter));
+        accountPolicy = new LoginThrottlePolicy("login-account", accountFreeAttempts,
+                Duration.ofMillis(baseDelay), Duration.ofMillis(maxLockout), Duration.ofMillis(resetAfter));
+
+        ipThrottledCounter = Counter.builder("auth.login.throttled").tag("key", "ip")
+                .description("Login attempts rejected before the password check")
+                .register(meterRegistry);
+        accountThrottledCounter = Counter.builder("auth.login.throttled").tag("key", "account")
+                .description("Login attempts rejected before the password check")
+                .register(meterRegistry);
+        passwordCheckTimer = Timer.builder("auth.login.password.check")
+                .description("Time spent authenticating a password")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.password.check.saved", this, LoginAttemptGuard::savedSeconds)
+                .description("Estimated password check time avoided by throttling")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return milliseconds until this IP and account may try again, or 0 if allowed
+     */
+    public long retryAfterMillis(String ipAddress, String account) {
+        long ipLockout = ipAddress != null ? loginThrottle.lockedForMillis(ipPolicy, ipAddress) : 0;
+        if (ipLockout > 0) {
+            ipThrottledCounter.increment();
+            return ipLockout;
+        }
+        long accountLockout = loginThrottle.lockedForMillis(accountPolicy, normalize(account));
+        if (accountLockout > 0) {
+            accountThrottledCounter.increment();
+        }
+        return accountLockout;
+    }
+
+    public void onFailure(String ipAddress, String account) {
+        if (ipAddress != null) {
+            loginThrottle.recordFailure(ipPolicy, ipAddress);
+        }
+        loginThrottle.recordFailure(accountPolicy, normalize(account));
+    }
+
+    public void onSuccess(String account) {
+        loginThrottle.reset(accountPolicy, normalize(account));
+    }
+
+    public <T> T timePasswordCheck(Supplier<T> check) {
+        return passwordCheckTimer.record(check);
+    }
+
+    private double savedSeconds() {
+        double throttled = ipThrottledCounter.count() + accountThrottledCounter.count();
+        return throttled * passwordCheckTimer.mean(TimeUnit.SECONDS);
+    }
+
+    private static String normalize(String account) {
+        return account == null ? "" : account.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+/**
+ * Failed-login counters with exponential lockout, keyed by client IP or account. Each
+ * key keeps only a failure count and a locked-until time.
+ */
+public interface LoginThrottle {
+
+    /**
+     * @return milliseconds until the key may try again, or 0 if it is not locked out
+     */
+    long lockedForMillis(LoginThrottlePolicy policy, String key);
+
+    /**
+     * Counts a failed attempt and locks the key out if it is past the free attempts.
+     */
+    void recordFailure(LoginThrottlePolicy policy, String key);
+
+    void reset(LoginThrottlePolicy policy, String key);
+}
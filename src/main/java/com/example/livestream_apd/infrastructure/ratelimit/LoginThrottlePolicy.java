@@ -0,0 +1,25 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Exponential backoff for failed logins on one kind of key (client IP or account).
+ * The first {@code freeAttempts} failures cost nothing; each one after that locks the
+ * key for {@code baseDelay * 2^n}, capped at {@code maxLockout}. Failures are forgotten
+ * once none has happened for {@code resetAfter}.
+ */
+public record LoginThrottlePolicy(String name, int freeAttempts, Duration baseDelay,
+                                  Duration maxLockout, Duration resetAfter) {
+
+    /**
+     * Lockout that follows the given number of consecutive failures, or 0 while still
+     * within the free attempts.
+     */
+    public long lockoutMillis(int failures) {
+        if (failures <= freeAttempts) {
+            return 0;
+        }
+        int doublings = Math.min(failures - freeAttempts - 1, 30);
+        return Math.min(maxLockout.toMillis(), baseDelay.toMillis() << doublings);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * A named limit of {@code permits} actions per sliding {@code window}.
+ */
+public record RateLimitPolicy(String name, int permits, Duration window) {
+
+    public static RateLimitPolicy perMinute(String name, int permits) {
+        return new RateLimitPolicy(name, permits, Duration.ofMinutes(1));
+    }
+}
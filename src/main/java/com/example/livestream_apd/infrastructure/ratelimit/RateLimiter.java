@@ -0,0 +1,16 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+/**
+ * Sliding-window rate limiter keyed per user. The estimate for the current window is
+ * {@code previousCount * (1 - elapsedFraction) + currentCount}, which only needs two
+ * counters per key instead of a log of timestamps.
+ */
+public interface RateLimiter {
+
+    /**
+     * Records one action for the user if it fits within the policy.
+     *
+     * @return true if the action is allowed, false if the user is over the limit
+     */
+    boolean tryAcquire(RateLimitPolicy policy, long userId);
+}
@@ -0,0 +1,77 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Redis-backed login throttle so lockouts hold across nodes. Each key is a small hash of
+ * failure count and locked-until time whose expiry is pushed back on every failure, so
+ * Redis forgets the failures after {@code resetAfter} without a cleanup job.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "mode", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisLoginThrottle implements LoginThrottle {
+
+    // ARGV: free attempts, base delay, max lockout, now, reset after (all ms)
+    private static final RedisScript<Long> FAILURE_SCRIPT = new DefaultRedisScript<>(
+            "local failures = redis.call('HINCRBY', KEYS[1], 'f', 1) " +
+            "local free = tonumber(ARGV[1]) " +
+            "local lockout = 0 " +
+            "if failures > free then " +
+            "  lockout = math.min(tonumber(ARGV[3]), tonumber(ARGV[2]) * 2 ^ math.min(failures - free - 1, 30)) " +
+            "  redis.call('HSET', KEYS[1], 'u', string.format('%.0f', tonumber(ARGV[4]) + lockout)) " +
+            "end " +
+            "redis.call('PEXPIRE', KEYS[1], string.format('%.0f', math.max(tonumber(ARGV[5]), lockout))) " +
+            "return failures",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public long lockedForMillis(LoginThrottlePolicy policy, String key) {
+        try {
+            Object lockedUntil = redisTemplate.opsForHash().get(key(policy, key), "u");
+            return lockedUntil != null ? Math.max(0, Long.parseLong(lockedUntil.toString()) - System.currentTimeMillis()) : 0;
+        } catch (Exception e) {
+            // Fail open: a Redis outage must not lock everyone out
+            log.error("Login throttle check failed for {} {}: {}", policy.name(), key, e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public void recordFailure(LoginThrottlePolicy policy, String key) {
+        try {
+            redisTemplate.execute(FAILURE_SCRIPT, List.of(key(policy, key)),
+                    String.valueOf(policy.freeAttempts()),
+                    String.valueOf(policy.baseDelay().toMillis()),
+                    String.valueOf(policy.maxLockout().toMillis()),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(policy.resetAfter().toMillis()));
+        } catch (Exception e) {
+            log.error("Error recording login failure for {} {}: {}", policy.name(), key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void reset(LoginThrottlePolicy policy, String key) {
+        try {
+            redisTemplate.delete(key(policy, key));
+        } catch (Exception e) {
+            log.error("Error resetting login throttle for {} {}: {}", policy.name(), key, e.getMessage());
+        }
+    }
+
+    private static String key(LoginThrottlePolicy policy, String key) {
+        return "loginthrottle:" + policy.name() + ":" + key;
+    }
+}
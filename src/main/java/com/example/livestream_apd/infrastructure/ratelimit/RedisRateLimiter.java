@@ -0,0 +1,76 @@
+package com.example.livestream_apd.infrastructure.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Redis-backed limiter so limits hold across nodes. The sliding-window check and the
+ * increment run in one Lua script, keeping them atomic without a round-trip per step.
+ * Both window keys share a {@code {policy:user}} hash tag so they land in the same
+ * Redis Cluster slot. Checks that fail open because Redis is unavailable are counted in
+ * {@code ratelimit.fail-open}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.rate-limit", name = "mode", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final RedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "local previous = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "if previous * tonumber(ARGV[1]) + current >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('INCR', KEYS[1]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Counter failOpenCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        failOpenCounter = Counter.builder("ratelimit.fail-open")
+                .description("Rate limit checks allowed because Redis could not be reached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean tryAcquire(RateLimitPolicy policy, long userId) {
+        long now = System.currentTimeMillis();
+        long windowMillis = policy.window().toMillis();
+        long window = now / windowMillis;
+        double previousWeight = 1 - (double) (now % windowMillis) / windowMillis;
+        String prefix = "ratelimit:{" + policy.name() + ":" + userId + "}:";
+
+        try {
+            Long allowed = redisTemplate.execute(SLIDING_WINDOW_SCRIPT,
+                    List.of(prefix + window, prefix + (window - 1)),
+                    String.valueOf(previousWeight),
+                    String.valueOf(policy.permits()),
+                    String.valueOf(windowMillis * 2));
+            if (allowed == null) {
+                failOpenCounter.increment();
+                return true;
+            }
+            return allowed == 1L;
+        } catch (Exception e) {
+            // Fail open: a Redis outage must not block messaging
+            failOpenCounter.increment();
+            log.error("Rate limit check failed for policy {} user {}: {}", policy.name(), userId, e.getMessage());
+            return true;
+        }
+    }
+}
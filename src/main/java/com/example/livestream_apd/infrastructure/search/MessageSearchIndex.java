@@ -0,0 +1,529 @@
+package com.example.livestream_apd.infrastructure.search;
+
+import com.example.livestream_apd.domain.repository.ChatMessageRepository;
+import com.example.livestream_apd.domain.repository.DirectMessageRepository;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded Lucene index over chat and direct-message content, stored on local disk.
+ * Text is lower-cased and folded to ASCII, so "Tiếng Việt", "tieng viet" and
+ * "TIENG VIET" match each other. Every document is scoped to its room or
+ * conversation and searches are filtered to one scope.
+ *
+ * <p>The index is fed after commit from message create, edit and delete. Searches
+ * only return message ids; callers load the rows from the database, so a stale
+ * document can never surface a deleted message. Until a full build from the database
+ * has completed, {@link #isReady()} is false and callers keep using the LIKE queries.</p>
+ *
+ * <p>Each commit records the highest indexed id per kind and whether the node shut
+ * down cleanly. Changes since the last commit are lost on a crash, so after an
+ * unclean stop the index stays unready until it has re-read every message above the
+ * high-water mark and every message edited since that commit. A scheduled catch-up
+ * also re-reads new rows, covering any after-commit update that failed. The index is
+ * local to one node and would miss other nodes' writes, so it is turned off when the
+ * chat cluster relay is enabled.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSearchIndex {
+
+    public enum Kind { CHAT, DIRECT }
+
+    public record SearchHits(List<Long> messageIds, long totalHits) {
+    }
+
+    private static final String KEY = "key";
+    private static final String SCOPE = "scope";
+    private static final String CONTENT = "content";
+    private static final String MESSAGE_ID = "messageId";
+    private static final String CREATED_AT = "createdAt";
+    private static final String BUILD_COMPLETE = "buildComplete";
+    private static final String CLEAN_SHUTDOWN = "cleanShutdown";
+    private static final String COMMITTED_AT = "committedAt";
+    private static final String HIGH_WATER_SUFFIX = "HighWater";
+
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(CREATED_AT, SortField.Type.LONG, true),
+            new SortField(MESSAGE_ID, SortField.Type.LONG, true));
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final DirectMessageRepository directMessageRepository;
+    private final Analyzer analyzer = new FoldingAnalyzer();
+
+    @Value("${app.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.search.index-path:data/search-index}")
+    private Path indexPath;
+
+    @Value("${app.search.rebuild-if-incomplete:true}")
+    private boolean rebuildIfIncomplete;
+
+    @Value("${app.search.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    @Value("${app.search.catch-up-overlap:1000}")
+    private long catchUpOverlap;
+
+    @Value("${app.search.catch-up-margin:300000}")
+    private long catchUpMargin;
+
+    @Value("${app.websocket.chat.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean buildComplete;
+    private volatile boolean ready;
+    private volatile long trustedCommitAt;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Map<Kind, AtomicLong> highWater = new EnumMap<>(Map.of(
+            Kind.CHAT, new AtomicLong(), Kind.DIRECT, new AtomicLong()));
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (enabled && clusterEnabled) {
+            log.warn("Message search index is node-local and disabled in cluster mode; searches use the database");
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+
+        directory = FSDirectory.open(indexPath);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        Map<String, String> commitData = new HashMap<>();
+        Iterable<Map.Entry<String, String>> liveCommitData = writer.getLiveCommitData();
+        if (liveCommitData != null) {
+            liveCommitData.forEach(entry -> commitData.put(entry.getKey(), entry.getValue()));
+        }
+        buildComplete = Boolean.parseBoolean(commitData.get(BUILD_COMPLETE));
+        boolean cleanShutdown = Boolean.parseBoolean(commitData.get(CLEAN_SHUTDOWN));
+        long committedAt = Long.parseLong(commitData.getOrDefault(COMMITTED_AT, "0"));
+        trustedCommitAt = committedAt;
+        for (Kind kind : Kind.values()) {
+            highWater.get(kind).set(Long.parseLong(commitData.getOrDefault(highWaterKey(kind), "0")));
+        }
+        // Until the next clean close, a restart must assume the last interval was lost
+        commitWithMarker(false);
+
+        log.info("Message search index opened at {} ({} documents, build complete: {}, clean shutdown: {})",
+                indexPath, writer.getDocStats().numDocs, buildComplete, cleanShutdown);
+        if (!buildComplete) {
+            if (rebuildIfIncomplete) {
+                rebuildAsync();
+            }
+        } else if (!cleanShutdown) {
+            recoverAsync(committedAt);
+        } else {
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public void indexMessage(Kind kind, Long messageId, Long scopeId, String content, LocalDateTime createdAt) {
+        if (enabled) {
+            TransactionCallbacks.afterCommit(() -> upsert(kind, messageId, scopeId, content, createdAt));
+        }
+    }
+
+    public void deleteMessage(Kind kind, Long messageId) {
+        if (enabled) {
+            TransactionCallbacks.afterCommit(() -> {
+                try {
+                    writer.deleteDocuments(new Term(KEY, key(kind, messageId)));
+                } catch (IOException e) {
+                    log.error("Error removing {} message {} from search index", kind, messageId, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds messages in one room or conversation, newest first. Every query term must
+     * match; the last one is matched as a prefix so partially typed words still hit.
+     *
+     * @return empty if the index is not ready or the search failed, in which case the
+     *         caller should fall back to the database
+     */
+    public Optional<SearchHits> search(Kind kind, Long scopeId, String text, Pageable pageable) {
+        if (!isReady()) {
+            return Optional.empty();
+        }
+
+        List<String> terms = analyze(text);
+        if (terms.isEmpty()) {
+            return Optional.of(new SearchHits(List.of(), 0));
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(SCOPE, scope(kind, scopeId))), BooleanClause.Occur.FILTER);
+        for (int i = 0; i < terms.size(); i++) {
+            Term term = new Term(CONTENT, terms.get(i));
+            Query clause = i == terms.size() - 1 ? new PrefixQuery(term) : new TermQuery(term);
+            builder.add(clause, BooleanClause.Occur.MUST);
+        }
+        Query query = builder.build();
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            int offset = (int) pageable.getOffset();
+            TopFieldDocs top = searcher.search(query, offset + pageable.getPageSize(), NEWEST_FIRST);
+            StoredFields storedFields = searcher.storedFields();
+
+            List<Long> messageIds = new ArrayList<>(pageable.getPageSize());
+            ScoreDoc[] scoreDocs = top.scoreDocs;
+            for (int i = offset; i < scoreDocs.length; i++) {
+                messageIds.add(storedFields.document(scoreDocs[i].doc).getField(MESSAGE_ID).numericValue().longValue());
+            }
+            return Optional.of(new SearchHits(messageIds, searcher.count(query)));
+        } catch (IOException e) {
+            log.error("Error searching {} messages in {}", kind, scopeId, e);
+            return Optional.empty();
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    log.warn("Error releasing search index searcher", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a full rebuild from the database in the background.
+     *
+     * @return false if a rebuild is already running or the index is disabled
+     */
+    public boolean rebuildAsync() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+
+        startBackground(this::rebuild, "message-search-rebuild");
+        return true;
+    }
+
+    /**
+     * Re-reads what an unclean stop may have lost, then marks the index ready.
+     */
+    private void recoverAsync(long committedAt) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        startBackground(() -> recover(committedAt), "message-search-recovery");
+    }
+
+    private void startBackground(Runnable task, String name) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                rebuilding.set(false);
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.refresh-interval:1000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Error refreshing search index", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.commit-interval:30000}")
+    public void commit() {
+        if (!enabled || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            commitWithMarker(false);
+        } catch (IOException e) {
+            log.error("Error committing search index", e);
+        }
+    }
+
+    /**
+     * Indexes rows the after-commit hooks missed. Rows are re-read from a little below
+     * the high-water mark, because transactions can commit out of id order.
+     */
+    @Scheduled(fixedDelayString = "${app.search.catch-up-interval:60000}")
+    public void catchUp() {
+        if (!enabled || !ready || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Kind kind : Kind.values()) {
+                long count = reindex(kind, Math.max(0, highWater.get(kind).get() - catchUpOverlap));
+                log.debug("Search index catch-up re-read {} {} messages", count, kind);
+            }
+        } catch (Exception e) {
+            log.error("Error catching up message search index", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // Only a ready index is recorded as clean; an interrupted recovery runs again
+            commitWithMarker(ready);
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            log.error("Error closing search index", e);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        ready = false;
+        buildComplete = false;
+        try {
+            writer.deleteAll();
+            highWater.values().forEach(mark -> mark.set(0));
+            long chatCount = reindex(Kind.CHAT, 0);
+            long directCount = reindex(Kind.DIRECT, 0);
+
+            buildComplete = true;
+            commitWithMarker(false);
+            searcherManager.maybeRefresh();
+            ready = true;
+            log.info("Rebuilt message search index: {} chat and {} direct messages in {} ms",
+                    chatCount, directCount, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            ready = false;
+            log.error("Error rebuilding message search index", e);
+        }
+    }
+
+    private void recover(long committedAt) {
+        long start = System.currentTimeMillis();
+        // Edits are found by time; the margin absorbs clock skew and slow transactions
+        LocalDateTime editedSince = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(Math.max(0, committedAt - catchUpMargin)), ZoneOffset.UTC);
+        try {
+            long count = 0;
+            for (Kind kind : Kind.values()) {
+                count += reindex(kind, Math.max(0, highWater.get(kind).get() - catchUpOverlap));
+                count += reindexEdited(kind, editedSince);
+            }
+            commitWithMarker(false);
+            searcherManager.maybeRefresh();
+            ready = true;
+            log.info("Recovered message search index after unclean shutdown: {} messages re-read in {} ms",
+                    count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Stays unready, so searches keep using the database until an admin rebuild
+            log.error("Error recovering message search index", e);
+        }
+    }
+
+    private long reindex(Kind kind, long fromId) {
+        long count = 0;
+        long afterId = fromId;
+        PageRequest batch = PageRequest.of(0, rebuildBatchSize);
+        while (true) {
+            // Rows of [id, scopeId, content, createdAt] in id order, so paging never rescans
+            List<Object[]> rows = kind == Kind.CHAT
+                    ? chatMessageRepository.findSearchIndexBatch(afterId, batch)
+                    : directMessageRepository.findSearchIndexBatch(afterId, batch);
+            if (rows.isEmpty()) {
+                return count;
+            }
+            afterId = upsertRows(kind, rows);
+            count += rows.size();
+        }
+    }
+
+    private long reindexEdited(Kind kind, LocalDateTime since) {
+        long count = 0;
+        long afterId = 0;
+        PageRequest batch = PageRequest.of(0, rebuildBatchSize);
+        while (true) {
+            List<Object[]> rows = kind == Kind.CHAT
+                    ? chatMessageRepository.findSearchIndexEditedBatch(since, afterId, batch)
+                    : directMessageRepository.findSearchIndexEditedBatch(since, afterId, batch);
+            if (rows.isEmpty()) {
+                return count;
+            }
+            afterId = upsertRows(kind, rows);
+            count += rows.size();
+        }
+    }
+
+    private long upsertRows(Kind kind, List<Object[]> rows) {
+        long lastId = 0;
+        for (Object[] row : rows) {
+            upsert(kind, (Long) row[0], (Long) row[1], (String) row[2], (LocalDateTime) row[3]);
+            lastId = (Long) row[0];
+        }
+        return lastId;
+    }
+
+    private void upsert(Kind kind, Long messageId, Long scopeId, String content, LocalDateTime createdAt) {
+        Term key = new Term(KEY, key(kind, messageId));
+        try {
+            if (content == null || content.isBlank()) {
+                writer.deleteDocuments(key);
+                return;
+            }
+
+            Document document = new Document();
+            document.add(new StringField(KEY, key.text(), Field.Store.NO));
+            document.add(new StringField(SCOPE, scope(kind, scopeId), Field.Store.NO));
+            document.add(new TextField(CONTENT, content, Field.Store.NO));
+            document.add(new StoredField(MESSAGE_ID, messageId));
+            document.add(new NumericDocValuesField(MESSAGE_ID, messageId));
+            document.add(new NumericDocValuesField(CREATED_AT,
+                    createdAt != null ? createdAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0));
+            writer.updateDocument(key, document);
+            // Advanced only after the document is in the writer, so a commit never claims more than it holds
+            highWater.get(kind).accumulateAndGet(messageId, Math::max);
+        } catch (IOException e) {
+            log.error("Error indexing {} message {}", kind, messageId, e);
+        }
+    }
+
+    private void commitWithMarker(boolean cleanShutdown) throws IOException {
+        // A commit taken mid-rebuild is marked incomplete, so a restart rebuilds again
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(BUILD_COMPLETE, Boolean.toString(buildComplete));
+        commitData.put(CLEAN_SHUTDOWN, Boolean.toString(cleanShutdown));
+        if (ready) {
+            // While recovering, the last trusted commit time is kept so a second crash re-reads the same edits
+            trustedCommitAt = System.currentTimeMillis();
+        }
+        commitData.put(COMMITTED_AT, Long.toString(trustedCommitAt));
+        highWater.forEach((kind, mark) -> commitData.put(highWaterKey(kind), Long.toString(mark.get())));
+        writer.setLiveCommitData(commitData.entrySet());
+        writer.commit();
+    }
+
+    private static String highWaterKey(Kind kind) {
+        return kind.name().toLowerCase() + HIGH_WATER_SUFFIX;
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(CONTENT, text)) {
+            CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(termAttribute.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            log.warn("Error analyzing search query", e);
+        }
+        return terms;
+    }
+
+    private static String key(Kind kind, Long messageId) {
+        return kind.name() + ":" + messageId;
+    }
+
+    private static String scope(Kind kind, Long scopeId) {
+        return kind.name() + ":" + scopeId;
+    }
+
+    /**
+     * Standard tokenization, lower-casing and ASCII folding, which strips Vietnamese
+     * tone marks and maps đ to d.
+     */
+    private static final class FoldingAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            StandardTokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+        }
+    }
+}
@@ -45,12 +45,13 @@ public class CurrentUserMethodArgumentResolver implements HandlerMethodArgumentR
                 authentication.getPrincipal().getClass().getName());
 
         if (authentication.getPrincipal() instanceof UserDetailsServiceImpl.UserPrincipal userPrincipal) {
-            String email = userPrincipal.getEmail();
-            log.info("Attempting to load User entity for email: {}", email);
+            Long userId = userPrincipal.getId();
+            log.info("Attempting to load User entity for id: {}", userId);
 
-            return userRepository.findByEmail(email)
+            // Primary key lookup; the principal already carries the id resolved at authentication
+            return userRepository.findById(userId)
                     .orElseGet(() -> {
-                        log.warn("User not found for email: {}", email);
+                        log.warn("User not found for id: {}", userId);
                         return null;
                     });
         } else if (authentication.getPrincipal() instanceof UserDetails userDetails) {
@@ -8,8 +8,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -23,7 +21,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
@@ -32,12 +30,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt, null)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
+            // Parsed and verified once; the subject then resolves through the principal cache
+            JwtTokenProvider.VerifiedToken token = StringUtils.hasText(jwt) ? jwtTokenProvider.parseAccessToken(jwt) : null;
+            if (token != null && token.subject() != null) {
+                UserDetailsServiceImpl.UserPrincipal userDetails = principalCache.get(token.subject());
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                if (jwtTokenProvider.validateToken(jwt, userDetails)) {
+                if (userDetails.isAccountNonLocked()) {
                     UsernamePasswordAuthenticationToken authentication =
                             new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -2,25 +2,62 @@ package com.example.livestream_apd.infrastructure.security;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 
+/**
+ * Issues and verifies JWTs. The signing key and parser are built once at startup.
+ * Verification parses a token once into a {@link VerifiedToken}, and verified tokens
+ * are cached by SHA-256 hash until they expire, so a client reusing its access token
+ * skips the signature check and claim parsing on later requests. At most
+ * {@code verified-cache-size} tokens are cached; invalid tokens never are.
+ */
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtTokenProvider {
+
+    /**
+     * Claims the server relies on, extracted from a token whose signature and expiry
+     * were verified.
+     */
+    public record VerifiedToken(String subject, String type, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
@@ -33,8 +70,16 @@ public class JwtTokenProvider {
     @Value("${app.jwt.issuer}")
     private String issuer;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${app.jwt.verified-cache-size:10000}")
+    private int verifiedCacheSize;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        Gauge.builder("security.jwt.verified.cached", verifiedTokens, Map::size)
+                .description("Verified tokens cached until they expire")
+                .register(meterRegistry);
     }
 
     public String generateAccessToken(Authentication authentication) {
@@ -63,20 +108,20 @@ public class JwtTokenProvider {
                     .issuer(issuer)
                     .issuedAt(now)
                     .expiration(expiryDate)
-                    .signWith(getSigningKey())
+                    .signWith(signingKey)
                     .compact();
     }
 
     public String getUsernameFromToken(String token) {
-        return getClaimFromToken (token, Claims::getSubject);
+        return verify(token).subject();
     }
 
     public Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken (token, Claims::getExpiration);
+        return new Date(verify(token).expiresAt());
     }
 
     public String getTokenType(String token) {
-        return getClaimFromToken (token, claims -> claims.get("type",String.class));
+        return verify(token).type();
     }
 
     public String getUserIdFromToken(String token) {
@@ -90,20 +135,67 @@ public class JwtTokenProvider {
 
     private Claims getAllClaimsFromToken(String token) {
         try{
-            return Jwts.parser()
-                        .verifyWith(getSigningKey())
-                        .build()
-                        .parseSignedClaims(token)
-                        .getPayload();
+            return parser.parseSignedClaims(token).getPayload();
         }catch (JwtException e){
             throw e;
         }
     }
 
+    /**
+     * Verifies a token, from the cache when it was verified before. Throws
+     * {@link JwtException} when the signature is invalid or the token has expired.
+     */
+    public VerifiedToken verify(String token) {
+        long now = System.currentTimeMillis();
+        String hash = hash(token);
+        VerifiedToken cached = verifiedTokens.get(hash);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            verifiedTokens.remove(hash, cached);
+        }
+
+        Claims claims = getAllClaimsFromToken(token);
+        Date expiration = claims.getExpiration();
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(), claims.get("type", String.class),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+        if (verifiedTokens.size() >= verifiedCacheSize) {
+            evictExpired();
+        }
+        if (verifiedTokens.size() < verifiedCacheSize) {
+            verifiedTokens.put(hash, verified);
+        }
+        return verified;
+    }
+
+    /**
+     * Verifies an access token. Returns null when the signature is invalid, the token
+     * has expired or it is not an access token.
+     */
+    public VerifiedToken parseAccessToken(String token) {
+        try {
+            VerifiedToken verified = verify(token);
+            if (!"access".equals(verified.type())) {
+                log.debug("Invalid token type: {}", verified.type());
+                return null;
+            }
+            return verified;
+        } catch (Exception e) {
+            log.error("Token validation failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.verified-cache-eviction-interval:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(verified -> verified.isExpired(now));
+    }
+
     public boolean isTokenExpired(String token) {
         try{
-            final Date expiration = getExpirationDateFromToken(token);
-            return expiration.before(new Date());
+            return verify(token).isExpired(System.currentTimeMillis());
         }catch (Exception e){
             return true;
         }
@@ -111,8 +203,9 @@ public class JwtTokenProvider {
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = getUsernameFromToken(token);
-            final String tokenType = getTokenType(token);
+            final VerifiedToken verified = verify(token);
+            final String username = verified.subject();
+            final String tokenType = verified.type();
 
             // If userDetails is provided, verify username matches
             if (userDetails != null) {
@@ -122,7 +215,7 @@ public class JwtTokenProvider {
                 }
             }
 
-            if (isTokenExpired(token)) {
+            if (verified.isExpired(System.currentTimeMillis())) {
                 log.debug("Token is expired");
                 return false;
             }
@@ -141,14 +234,23 @@ public class JwtTokenProvider {
 
     public boolean validateRefreshToken(String token) {
         try {
-            final String tokenType = getTokenType(token);
-            return !isTokenExpired(token)
-                    && "refresh".equals(tokenType);
+            final VerifiedToken verified = verify(token);
+            return !verified.isExpired(System.currentTimeMillis())
+                    && "refresh".equals(verified.type());
         } catch (Exception e) {
             return false;
         }
     }
 
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     public long getAccessTokenExpiration() {
         return accessTokenExpiration;
     }
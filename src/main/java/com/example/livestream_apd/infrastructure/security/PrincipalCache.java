@@ -0,0 +1,93 @@
+package com.example.livestream_apd.infrastructure.security;
+
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authenticated principals by token subject (the user's email), so a request with a
+ * valid access token is authenticated without loading the user, its roles and their
+ * permissions from the database.
+ *
+ * <p>Entries live for {@code ttl} and at most {@code max-size} are kept. Role changes,
+ * password resets, email verification and logout evict the user's entry after commit;
+ * changes made on another node are picked up when the entry expires. A load that
+ * overlaps an eviction is used for its request but not cached, so an eviction can never
+ * be undone by a principal read before it.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PrincipalCache {
+
+    private record Entry(UserDetailsServiceImpl.UserPrincipal principal, long loadedAt) {
+    }
+
+    private final UserDetailsServiceImpl userDetailsService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Entry> principals = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Value("${app.security.principal-cache.ttl:60000}")
+    private long ttl;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("security.principals.cached", principals, Map::size)
+                .description("Authenticated principals cached by token subject")
+                .register(meterRegistry);
+    }
+
+    public UserDetailsServiceImpl.UserPrincipal get(String subject) {
+        long now = System.currentTimeMillis();
+        Entry cached = principals.get(subject);
+        if (cached != null && now - cached.loadedAt() <= ttl) {
+            return cached.principal();
+        }
+
+        long evictionsBefore = evictions.get();
+        UserDetailsServiceImpl.UserPrincipal principal =
+                (UserDetailsServiceImpl.UserPrincipal) userDetailsService.loadUserByUsername(subject);
+        if (principals.size() >= maxSize) {
+            evictExpired();
+        }
+        if (principals.size() < maxSize) {
+            Entry loaded = new Entry(principal, now);
+            principals.put(subject, loaded);
+            if (evictions.get() != evictionsBefore) {
+                principals.remove(subject, loaded);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Drops the cached principal of a user whose roles, status or credentials changed.
+     */
+    public void invalidate(String subject) {
+        TransactionCallbacks.afterCommit(() -> {
+            evictions.incrementAndGet();
+            principals.remove(subject);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.principal-cache.ttl:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        principals.values().removeIf(entry -> now - entry.loadedAt() > ttl);
+    }
+}
@@ -0,0 +1,563 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.AuditLog;
+import com.example.livestream_apd.domain.repository.AuditLogRepository;
+import com.example.livestream_apd.utils.TimeUtil;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit trail. Events are queued in memory and inserted in JDBC batches on
+ * a short interval, so a burst of failed logins costs each request a queue offer instead
+ * of an insert. Events that reference a user are queued once the surrounding transaction
+ * commits, so the batch never points at a user that was rolled back.
+ *
+ * <p>The queue is a lock-free linked queue bounded by a reserved-slot counter. When it is
+ * full, {@code overflow} decides: {@code BLOCK} waits up to {@code block-timeout} for a
+ * slot and then drops, {@code DROP} drops at once, and {@code SPILL} appends the event to
+ * a local file that is written to the database once the queue has drained and again on
+ * startup. The drain records how many lines of the file it has written, so a drain that
+ * stops halfway resumes after the last written batch. Shutdown flushes everything still
+ * queued and spills whatever could not be written.</p>
+ *
+ * <p>A batch that fails {@code max-batch-attempts} times is inserted row by row. Rows the
+ * database rejects outright are written to the dead-letter file next to the spill file
+ * and counted in {@code audit.events.dead-lettered}, so one bad event cannot stall the
+ * queue. Other errors, such as the database being down, keep the rows for the next
+ * flush.</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditLogWriter {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    private static final String INSERT_LOG_SQL =
+            "INSERT INTO audit_logs (user_id, action, entity_type, entity_id, ip_address, user_agent, success, error_message, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_DETAIL_SQL =
+            "INSERT INTO audit_log_details (audit_log_id, detail_key, detail_value) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuditLogRepository auditLogRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.audit.async.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.audit.async.overflow:SPILL}")
+    private OverflowPolicy overflow;
+
+    @Value("${app.audit.async.block-timeout:50}")
+    private long blockTimeout;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:20}")
+    private int batchSize;
+
+    @Value("${app.audit.async.spill-path:data/audit-spill.log}")
+    private Path spillPath;
+
+    @Value("${app.audit.async.max-batch-attempts:3}")
+    private int maxBatchAttempts;
+
+    private final Queue<PendingAuditLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private final Object spillLock = new Object();
+    private BufferedWriter spill;
+    private final AtomicInteger spilled = new AtomicInteger();
+    private volatile boolean drainPending;
+    private List<PendingAuditLog> failedBatch = List.of();
+    private int failedAttempts;
+    // Failed attempts of the spill batch the drain is stuck on
+    private int drainAttempts;
+    private Path drainingPath;
+    private Path drainOffsetPath;
+    private Path deadLetterPath;
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter deadLetteredCounter;
+
+    public record PendingAuditLog(
+            Long userId,
+            String action,
+            String entityType,
+            Long entityId,
+            Map<String, String> details,
+            String ipAddress,
+            String userAgent,
+            boolean success,
+            String errorMessage,
+            LocalDateTime createdAt
+    ) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        droppedCounter = Counter.builder("audit.events.dropped")
+                .description("Audit events dropped because the queue was full")
+                .register(meterRegistry);
+        spilledCounter = Counter.builder("audit.events.spilled")
+                .description("Audit events written to the local spill file because the queue was full")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("audit.events.dead-lettered")
+                .description("Audit events the database rejected, written to the dead-letter file")
+                .register(meterRegistry);
+        Gauge.builder("audit.queue.depth", queued, AtomicInteger::get)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("audit.queue.lag", this, AuditLogWriter::lagMillis)
+                .description("Age in milliseconds of the oldest queued audit event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+
+        drainingPath = spillPath.resolveSibling(spillPath.getFileName() + ".draining");
+        drainOffsetPath = spillPath.resolveSibling(spillPath.getFileName() + ".draining.offset");
+        deadLetterPath = spillPath.resolveSibling(spillPath.getFileName() + ".dead");
+        if (spillPath.getParent() != null) {
+            Files.createDirectories(spillPath.getParent());
+        }
+        drainPending = true;
+        drainSpill();
+        log.info("Async audit writer enabled (capacity: {}, overflow: {}, batch size: {})",
+                queueCapacity, overflow, batchSize);
+    }
+
+    /**
+     * Records an audit event. With the async writer disabled it is saved in the caller's
+     * transaction as before.
+     */
+    public void record(AuditLog auditLog) {
+        if (!enabled) {
+            auditLogRepository.save(auditLog);
+            return;
+        }
+
+        PendingAuditLog event = new PendingAuditLog(
+                auditLog.getUser() != null ? auditLog.getUser().getId() : null,
+                auditLog.getAction(),
+                auditLog.getEntityType(),
+                auditLog.getEntityId(),
+                auditLog.getDetails(),
+                auditLog.getIpAddress(),
+                auditLog.getUserAgent(),
+                !Boolean.FALSE.equals(auditLog.getSuccess()),
+                auditLog.getErrorMessage(),
+                auditLog.getCreatedAt() != null ? auditLog.getCreatedAt() : TimeUtil.nowUtc());
+        if (event.userId() != null) {
+            TransactionCallbacks.afterCommit(() -> enqueue(event));
+        } else {
+            enqueue(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.async.flush-interval:500}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            if (!failedBatch.isEmpty() && !persistOrSalvage(failedBatch, ++failedAttempts)) {
+                return;
+            }
+            failedBatch = List.of();
+            failedAttempts = 0;
+
+            List<PendingAuditLog> batch = new ArrayList<>(batchSize);
+            PendingAuditLog event;
+            while ((event = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(event);
+                if (batch.size() == batchSize) {
+                    if (!persistBatch(batch)) {
+                        // Retried first on the next flush
+                        failedBatch = batch;
+                        failedAttempts = 1;
+                        return;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty() && !persistBatch(batch)) {
+                failedBatch = batch;
+                failedAttempts = 1;
+                return;
+            }
+
+            if (spilled.get() > 0 || drainPending) {
+                drainSpill();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        flush();
+        synchronized (flushLock) {
+            // Whatever the database did not take is written on the next startup
+            List<PendingAuditLog> unwritten = new ArrayList<>(failedBatch);
+            failedBatch = List.of();
+            PendingAuditLog event;
+            while ((event = queue.poll()) != null) {
+                queued.decrementAndGet();
+                unwritten.add(event);
+            }
+            int lost = 0;
+            for (PendingAuditLog pending : unwritten) {
+                if (!writeSpill(pending)) {
+                    lost++;
+                }
+            }
+            if (!unwritten.isEmpty()) {
+                log.warn("Audit writer stopped with {} unwritten events, spilled {} to {}",
+                        unwritten.size(), unwritten.size() - lost, spillPath);
+            }
+        }
+        synchronized (spillLock) {
+            closeSpill();
+        }
+    }
+
+    private void enqueue(PendingAuditLog event) {
+        if (tryReserve()) {
+            queue.offer(event);
+            return;
+        }
+
+        switch (overflow) {
+            case BLOCK -> {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+                while (System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    if (tryReserve()) {
+                        queue.offer(event);
+                        return;
+                    }
+                }
+                drop(event);
+            }
+            case SPILL -> {
+                if (!writeSpill(event)) {
+                    drop(event);
+                }
+            }
+            default -> drop(event);
+        }
+    }
+
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = queued.get();
+            if (current >= queueCapacity) {
+                return false;
+            }
+        } while (!queued.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void drop(PendingAuditLog event) {
+        droppedCounter.increment();
+        log.warn("Audit queue is full, dropping {} event", event.action());
+    }
+
+    private double lagMillis() {
+        PendingAuditLog oldest = queue.peek();
+        return oldest != null ? Duration.between(oldest.createdAt(), TimeUtil.nowUtc()).toMillis() : 0;
+    }
+
+    private boolean persistBatch(List<PendingAuditLog> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertBatch(batch));
+            log.debug("Wrote {} audit events", batch.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Error writing {} audit events", batch.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Retries a batch that failed before; on the last attempt it is inserted row by row.
+     *
+     * @param batch mutable; rows that were written or dead-lettered are removed from its head
+     * @return true once every row of the batch was written or dead-lettered
+     */
+    private boolean persistOrSalvage(List<PendingAuditLog> batch, int attempt) {
+        if (persistBatch(batch)) {
+            batch.clear();
+            return true;
+        }
+        return attempt >= maxBatchAttempts && persistRowByRow(batch);
+    }
+
+    /**
+     * @return false if a row failed for a reason other than the row itself; that row and
+     *         the ones after it stay in the batch
+     */
+    private boolean persistRowByRow(List<PendingAuditLog> batch) {
+        log.warn("Audit batch failed {} times, inserting its {} events one by one", maxBatchAttempts, batch.size());
+        while (!batch.isEmpty()) {
+            PendingAuditLog event = batch.get(0);
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertBatch(List.of(event)));
+            } catch (DataIntegrityViolationException e) {
+                deadLetter(event, e.getMostSpecificCause().getMessage());
+            } catch (Exception e) {
+                log.error("Error writing {} audit event, keeping it for the next flush", event.action(), e);
+                return false;
+            }
+            batch.remove(0);
+        }
+        return true;
+    }
+
+    private void deadLetter(PendingAuditLog event, String reason) {
+        deadLetteredCounter.increment();
+        log.error("{} audit event rejected ({}), writing it to {}", event.action(), reason, deadLetterPath);
+        try {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("reason", reason);
+            record.put("event", event);
+            Files.writeString(deadLetterPath, objectMapper.writeValueAsString(record) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Error writing {} audit event to the dead-letter file", event.action(), e);
+        }
+    }
+
+    private void insertBatch(List<PendingAuditLog> batch) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_LOG_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingAuditLog event = batch.get(i);
+                        if (event.userId() != null) {
+                            ps.setLong(1, event.userId());
+                        } else {
+                            ps.setNull(1, Types.BIGINT);
+                        }
+                        ps.setString(2, event.action());
+                        ps.setString(3, event.entityType());
+                        if (event.entityId() != null) {
+                            ps.setLong(4, event.entityId());
+                        } else {
+                            ps.setNull(4, Types.BIGINT);
+                        }
+                        ps.setString(5, event.ipAddress());
+                        ps.setString(6, event.userAgent());
+                        ps.setBoolean(7, event.success());
+                        ps.setString(8, event.errorMessage());
+                        ps.setTimestamp(9, Timestamp.valueOf(event.createdAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                },
+                keyHolder);
+
+        List<Object[]> detailRows = new ArrayList<>();
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, String> details = batch.get(i).details();
+            if (details == null || details.isEmpty()) {
+                continue;
+            }
+            Object auditLogId = keys.get(i).values().iterator().next();
+            details.forEach((key, value) -> detailRows.add(new Object[]{auditLogId, key, value}));
+        }
+        if (!detailRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DETAIL_SQL, detailRows);
+        }
+    }
+
+    private boolean writeSpill(PendingAuditLog event) {
+        synchronized (spillLock) {
+            try {
+                if (spill == null) {
+                    spill = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                spill.write(objectMapper.writeValueAsString(event));
+                spill.newLine();
+                spill.flush();
+                spilled.incrementAndGet();
+                spilledCounter.increment();
+                return true;
+            } catch (IOException e) {
+                log.error("Error spilling {} audit event", event.action(), e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Writes spilled events to the database. The spill file is first moved aside, so
+     * overflowing requests keep appending to a fresh file while the old one is written.
+     * Runs on startup and after a flush that left the queue empty. After each batch the
+     * number of lines written so far is saved next to the file, and a drain that failed
+     * or was interrupted resumes from there.
+     */
+    private void drainSpill() {
+        synchronized (spillLock) {
+            try {
+                // A file left over from a failed or interrupted drain is finished first
+                if (!Files.exists(drainingPath)) {
+                    if (!Files.exists(spillPath)) {
+                        drainPending = false;
+                        return;
+                    }
+                    closeSpill();
+                    // Left behind if a previous drain stopped between its two deletes
+                    Files.deleteIfExists(drainOffsetPath);
+                    Files.move(spillPath, drainingPath);
+                    spilled.set(0);
+                }
+            } catch (IOException e) {
+                log.error("Error moving audit spill file {} aside", spillPath, e);
+                return;
+            }
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(drainingPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Error reading audit spill file {}", drainingPath, e);
+            drainPending = true;
+            return;
+        }
+
+        int written = readDrainOffset();
+        List<PendingAuditLog> batch = new ArrayList<>(batchSize);
+        List<Integer> batchLines = new ArrayList<>(batchSize);
+        for (int line = written; line < lines.size(); line++) {
+            try {
+                batch.add(objectMapper.readValue(lines.get(line), PendingAuditLog.class));
+                batchLines.add(line);
+            } catch (Exception e) {
+                // A torn final line from a crash mid-write is expected; skip it
+                log.warn("Skipping unreadable audit spill line");
+            }
+            if (batch.size() < batchSize && line < lines.size() - 1) {
+                continue;
+            }
+
+            int size = batch.size();
+            boolean done = batch.isEmpty() || persistOrSalvage(batch, ++drainAttempts);
+            int handled = size - batch.size();
+            if (!done) {
+                // Rows written one by one before the failure are not written again
+                if (handled > 0) {
+                    saveDrainOffset(batchLines.get(handled - 1) + 1);
+                }
+                drainPending = true;
+                return;
+            }
+            drainAttempts = 0;
+            saveDrainOffset(line + 1);
+            batchLines.clear();
+        }
+        try {
+            Files.delete(drainingPath);
+            Files.deleteIfExists(drainOffsetPath);
+            // Events spilled meanwhile are picked up on the next flush
+            drainPending = false;
+            log.info("Wrote {} spilled audit events from {}", lines.size() - written, drainingPath);
+        } catch (IOException e) {
+            log.error("Error deleting drained audit spill file {}", drainingPath, e);
+            drainPending = true;
+        }
+    }
+
+    private int readDrainOffset() {
+        try {
+            return Files.exists(drainOffsetPath)
+                    ? Integer.parseInt(Files.readString(drainOffsetPath, StandardCharsets.UTF_8).trim())
+                    : 0;
+        } catch (IOException | NumberFormatException e) {
+            // Worst case the batches written before are written again
+            log.warn("Cannot read audit spill drain offset {}, starting from the beginning", drainOffsetPath);
+            return 0;
+        }
+    }
+
+    private void saveDrainOffset(int linesWritten) {
+        try {
+            Files.writeString(drainOffsetPath, String.valueOf(linesWritten), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Error saving audit spill drain offset {}", drainOffsetPath, e);
+        }
+    }
+
+    private void closeSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.close();
+        } catch (IOException e) {
+            log.error("Error closing audit spill file", e);
+        }
+        spill = null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Hands out chat message ids before the row is inserted, so a write-behind message can
+ * be acknowledged with its real id. Every chat insert takes its id from here. Ids are
+ * reserved from the {@code id_sequences} table in blocks of {@code block-size}, each in
+ * its own short transaction, and served from memory until the block runs out. A
+ * reservation never starts below the current {@code MAX(id) + 1}, so rows inserted
+ * through the AUTO_INCREMENT column by older versions are never reused.
+ */
+@Component
+@Slf4j
+public class ChatMessageIdAllocator {
+
+    private static final String SEQUENCE_NAME = "chat_messages";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reserveTransaction;
+
+    @Value("${app.chat.write-behind.id-block-size:100}")
+    private int blockSize;
+
+    private long next;
+    private long limit;
+
+    public ChatMessageIdAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Reservations must not hold the sequence row lock for the caller's whole transaction
+        this.reserveTransaction = new TransactionTemplate(transactionManager);
+        this.reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized long nextId() {
+        if (next >= limit) {
+            next = reserveBlock();
+            limit = next + blockSize;
+        }
+        return next++;
+    }
+
+    private long reserveBlock() {
+        try {
+            return reserveTransaction.execute(status -> reserve());
+        } catch (DuplicateKeyException e) {
+            // Another node created the sequence row first
+            return reserveTransaction.execute(status -> reserve());
+        }
+    }
+
+    private long reserve() {
+        long floor = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM chat_messages", Long.class);
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT next_value FROM id_sequences WHERE name = ? FOR UPDATE", Long.class, SEQUENCE_NAME);
+        long start = current.isEmpty() ? floor : Math.max(current.get(0), floor);
+        if (current.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO id_sequences (name, next_value) VALUES (?, ?)",
+                    SEQUENCE_NAME, start + blockSize);
+        } else {
+            jdbcTemplate.update("UPDATE id_sequences SET next_value = ? WHERE name = ?",
+                    start + blockSize, SEQUENCE_NAME);
+        }
+        log.debug("Reserved chat message ids {} to {}", start, start + blockSize - 1);
+        return start;
+    }
+}
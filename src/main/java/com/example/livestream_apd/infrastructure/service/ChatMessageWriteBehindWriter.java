@@ -0,0 +1,594 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.ChatMessage;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Write-behind persistence for live chat messages. Each message gets its id from
+ * {@link ChatMessageIdAllocator} up front, is appended to a local replay journal,
+ * queued in memory and inserted in JDBC batches on a short interval. The journal is
+ * forced to disk before a message is acknowledged; concurrent senders share one
+ * {@code force()}. Each committed batch writes a checkpoint, and on startup every
+ * record after the last checkpoint is replayed. Inserts skip a row that already exists
+ * with the same author, room and time, so replaying a batch that committed just before a
+ * crash is harmless; an existing row that differs is an id collision and is dead-lettered.
+ * If the replay fails, the records stay in the journal and are retried by the scheduled
+ * flush.
+ *
+ * <p>Every chat insert goes through {@link #insertNow} or {@link #enqueue} with an id from
+ * the allocator, also with write-behind disabled, so the AUTO_INCREMENT column never
+ * hands out an id inside a block another node has reserved.</p>
+ *
+ * <p>A batch that fails {@code max-batch-attempts} times is inserted row by row. Rows the
+ * database rejects outright (a deleted room or parent, an over-long column) are written
+ * to the dead-letter file next to the journal and counted in
+ * {@code chat.write-behind.dead-lettered}, so one bad row cannot stall the queue. Other
+ * errors, such as the database being down, keep the rows for the next flush.</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMessageWriteBehindWriter {
+
+    private static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO chat_messages (id, user_id, chat_room_id, parent_message_id, content, message_type, is_deleted, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, false, ?)";
+    private static final String INSERT_METADATA_SQL =
+            "INSERT INTO chat_message_metadata (message_id, meta_key, meta_value) VALUES (?, ?, ?)";
+    private static final String MESSAGE_RECORD = "M ";
+    private static final String CHECKPOINT_RECORD = "C ";
+    private static final String EXISTING_ROWS_SQL = "SELECT id, user_id, chat_room_id, created_at FROM chat_messages WHERE id IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MessageSearchIndex searchIndex;
+    private final ChatMessageIdAllocator idAllocator;
+    private final MeterRegistry meterRegistry;
+    private final ChatRoomHistoryCache historyCache;
+
+    @Value("${app.chat.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:20}")
+    private int batchSize;
+
+    @Value("${app.chat.write-behind.journal-path:data/chat-write-behind.journal}")
+    private Path journalPath;
+
+    @Value("${app.chat.write-behind.max-batch-attempts:3}")
+    private int maxBatchAttempts;
+
+    private BlockingQueue<PendingChatMessage> queue;
+    private final Object journalLock = new Object();
+    private final Object forceLock = new Object();
+    private final Object flushLock = new Object();
+    private FileChannel journal;
+    private long sequence;
+    private long forcedSequence;
+    // Records that were taken from the queue or the journal but not yet committed
+    private final List<PendingChatMessage> backlog = new ArrayList<>();
+    // Failed attempts of the batch at the head of the backlog
+    private int headAttempts;
+    // Queued messages by id until their row commits, so replies can reference them
+    private final Map<Long, PendingChatMessage> pendingById = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> pendingPerRoom = new ConcurrentHashMap<>();
+    private Path deadLetterPath;
+    private Counter deadLetteredCounter;
+
+    public record PendingChatMessage(
+            long sequence,
+            Long id,
+            Long userId,
+            Long chatRoomId,
+            Long parentMessageId,
+            String content,
+            ChatMessage.MessageType messageType,
+            Map<String, String> metadata,
+            LocalDateTime createdAt
+    ) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        deadLetterPath = journalPath.resolveSibling(journalPath.getFileName() + ".dead");
+        deadLetteredCounter = Counter.builder("chat.write-behind.dead-lettered")
+                .description("Chat messages the database rejected, written to the dead-letter file")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        if (journalPath.getParent() != null) {
+            Files.createDirectories(journalPath.getParent());
+        }
+        backlog.addAll(readUnflushedRecords());
+        backlog.forEach(this::markPending);
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (backlog.isEmpty()) {
+            journal.truncate(0);
+        } else {
+            log.info("Replaying {} unflushed chat messages from {}", backlog.size(), journalPath);
+            synchronized (flushLock) {
+                if (!drainBacklog()) {
+                    log.warn("Chat write-behind replay incomplete, {} messages kept in the journal for the next flush",
+                            backlog.size());
+                }
+            }
+        }
+        log.info("Chat write-behind enabled (capacity: {}, batch size: {}, journal: {})",
+                queueCapacity, batchSize, journalPath);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reserves the id for a message that is about to be enqueued or inserted.
+     */
+    public long nextId() {
+        return idAllocator.nextId();
+    }
+
+    /**
+     * Whether the message is queued and its row not committed yet.
+     */
+    public boolean isPending(Long id) {
+        return id != null && pendingById.containsKey(id);
+    }
+
+    /**
+     * Whether the room has queued messages whose rows are not committed yet, so a page
+     * read from the database now would miss them.
+     */
+    public boolean hasPendingInRoom(Long chatRoomId) {
+        return pendingPerRoom.containsKey(chatRoomId);
+    }
+
+    /**
+     * Journals and queues a message for batched insertion under an id from {@link #nextId()}.
+     *
+     * @return false if write-behind is disabled, the queue is full or the journal cannot
+     *         be written; the caller should then persist synchronously with {@link #insertNow}
+     */
+    public boolean enqueue(Long id, Long userId, Long chatRoomId, Long parentMessageId, String content,
+                           ChatMessage.MessageType messageType, Map<String, String> metadata,
+                           LocalDateTime createdAt) {
+        if (!enabled) {
+            return false;
+        }
+
+        PendingChatMessage message;
+        synchronized (journalLock) {
+            // Only producers add under this lock, so a free slot seen here is still free below
+            if (queue.remainingCapacity() == 0) {
+                return false;
+            }
+
+            message = new PendingChatMessage(++sequence, id, userId, chatRoomId,
+                    parentMessageId, content, messageType, metadata, createdAt);
+            try {
+                appendRecord(MESSAGE_RECORD + objectMapper.writeValueAsString(message));
+            } catch (IOException e) {
+                log.error("Error journaling chat message for room {}", chatRoomId, e);
+                return false;
+            }
+            markPending(message);
+            queue.offer(message);
+        }
+        forceJournal(message.sequence());
+        return true;
+    }
+
+    /**
+     * Inserts a message in the caller's transaction, for when {@link #enqueue} refused it.
+     * A parent that is still queued is inserted first; its queued copy is then skipped.
+     *
+     * @throws IllegalStateException if the id is already taken by a different message
+     */
+    public void insertNow(Long id, Long userId, Long chatRoomId, Long parentMessageId, String content,
+                          ChatMessage.MessageType messageType, Map<String, String> metadata,
+                          LocalDateTime createdAt) {
+        List<PendingChatMessage> rows = new ArrayList<>();
+        rows.add(new PendingChatMessage(0, id, userId, chatRoomId, parentMessageId,
+                content, messageType, metadata, createdAt));
+        PendingChatMessage parent = parentMessageId != null ? pendingById.get(parentMessageId) : null;
+        while (parent != null) {
+            rows.add(0, parent);
+            parent = parent.parentMessageId() != null ? pendingById.get(parent.parentMessageId()) : null;
+        }
+        List<PendingChatMessage> collisions = insertBatch(rows);
+        if (!collisions.isEmpty()) {
+            throw new IllegalStateException("Chat message id " + collisions.get(0).id() + " is already used by another message");
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.write-behind.flush-interval:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            if (!drainBacklog()) {
+                return;
+            }
+
+            List<PendingChatMessage> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                if (!persistBatch(batch)) {
+                    // Retried first on the next flush; the journal still holds the records
+                    backlog.addAll(batch);
+                    headAttempts = 1;
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+
+            compactJournalIfIdle();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        flush();
+        synchronized (journalLock) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Error closing chat write-behind journal", e);
+            }
+        }
+        synchronized (flushLock) {
+            if (!backlog.isEmpty() || !queue.isEmpty()) {
+                log.warn("Chat write-behind stopped with {} unflushed messages; they will be replayed from the journal on startup",
+                        backlog.size() + queue.size());
+            }
+        }
+    }
+
+    /**
+     * Caller holds {@code flushLock}.
+     */
+    private boolean drainBacklog() {
+        while (!backlog.isEmpty()) {
+            List<PendingChatMessage> batch = backlog.subList(0, Math.min(batchSize, backlog.size()));
+            if (!persistBatch(batch)) {
+                if (++headAttempts < maxBatchAttempts || !persistRowByRow()) {
+                    return false;
+                }
+            } else {
+                batch.clear();
+            }
+            headAttempts = 0;
+        }
+        return true;
+    }
+
+    private boolean persistBatch(List<PendingChatMessage> batch) {
+        try {
+            assignMissingIds(batch);
+            List<PendingChatMessage> collisions = transactionTemplate.execute(status -> insertBatch(batch));
+            collisions.forEach(message -> deadLetter(message, "id already used by another message"));
+            writeCheckpoint(batch.get(batch.size() - 1).sequence());
+            batch.forEach(this::unmarkPending);
+            historyCache.onMessagesFlushed(batch.stream().map(PendingChatMessage::chatRoomId).collect(Collectors.toSet()));
+            log.debug("Flushed {} chat messages", batch.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Error flushing {} chat messages", batch.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Inserts the head batch of the backlog one row per transaction after it failed
+     * {@code max-batch-attempts} times. Caller holds {@code flushLock}.
+     *
+     * @return false if a row failed for a reason other than the row itself; that row and
+     *         the ones after it stay at the head of the backlog
+     */
+    private boolean persistRowByRow() {
+        int rows = Math.min(batchSize, backlog.size());
+        log.warn("Chat write-behind batch failed {} times, inserting its {} messages one by one", headAttempts, rows);
+        for (int i = 0; i < rows; i++) {
+            PendingChatMessage message = backlog.get(0);
+            try {
+                List<PendingChatMessage> collisions = transactionTemplate.execute(status -> insertBatch(List.of(message)));
+                if (!collisions.isEmpty()) {
+                    deadLetter(message, "id already used by another message");
+                }
+            } catch (DataIntegrityViolationException e) {
+                deadLetter(message, e.getMostSpecificCause().getMessage());
+            } catch (Exception e) {
+                log.error("Error inserting chat message {}, keeping it for the next flush", message.id(), e);
+                return false;
+            }
+            writeCheckpoint(message.sequence());
+            unmarkPending(message);
+            historyCache.onMessagesFlushed(Set.of(message.chatRoomId()));
+            backlog.remove(0);
+        }
+        return true;
+    }
+
+    private void deadLetter(PendingChatMessage message, String reason) {
+        deadLetteredCounter.increment();
+        log.error("Chat message {} for room {} rejected ({}), writing it to {}",
+                message.id(), message.chatRoomId(), reason, deadLetterPath);
+        try {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("reason", reason);
+            record.put("message", message);
+            Files.writeString(deadLetterPath, objectMapper.writeValueAsString(record) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Error writing chat message {} to the dead-letter file", message.id(), e);
+        }
+    }
+
+    private void markPending(PendingChatMessage message) {
+        if (message.id() != null && pendingById.put(message.id(), message) == null) {
+            pendingPerRoom.merge(message.chatRoomId(), 1, Integer::sum);
+        }
+    }
+
+    private void unmarkPending(PendingChatMessage message) {
+        if (message.id() != null && pendingById.remove(message.id(), message)) {
+            pendingPerRoom.computeIfPresent(message.chatRoomId(), (room, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Records journaled before ids were preallocated have none; they get one before replay.
+     */
+    private void assignMissingIds(List<PendingChatMessage> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingChatMessage record = batch.get(i);
+            if (record.id() == null) {
+                batch.set(i, new PendingChatMessage(record.sequence(), idAllocator.nextId(), record.userId(),
+                        record.chatRoomId(), record.parentMessageId(), record.content(),
+                        record.messageType(), record.metadata(), record.createdAt()));
+            }
+        }
+    }
+
+    /**
+     * Inserts the messages whose id is still free.
+     *
+     * @return the messages whose id is taken by a different row; they are not inserted
+     */
+    private List<PendingChatMessage> insertBatch(List<PendingChatMessage> batch) {
+        List<Long> ids = batch.stream().map(PendingChatMessage::id).toList();
+        Map<Long, Object[]> existing = new HashMap<>();
+        jdbcTemplate.query(EXISTING_ROWS_SQL + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+                rs -> {
+                    existing.put(rs.getLong(1), new Object[]{rs.getLong(2), rs.getLong(3), rs.getTimestamp(4)});
+                }, ids.toArray());
+
+        List<PendingChatMessage> missing = new ArrayList<>();
+        List<PendingChatMessage> collisions = new ArrayList<>();
+        for (PendingChatMessage message : batch) {
+            Object[] row = existing.get(message.id());
+            if (row == null) {
+                missing.add(message);
+            } else if (!isSameMessage(row, message)) {
+                collisions.add(message);
+            }
+            // Otherwise it is this message from an earlier attempt
+        }
+        if (missing.isEmpty()) {
+            return collisions;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                PendingChatMessage message = missing.get(i);
+                ps.setLong(1, message.id());
+                ps.setLong(2, message.userId());
+                ps.setLong(3, message.chatRoomId());
+                if (message.parentMessageId() != null) {
+                    ps.setLong(4, message.parentMessageId());
+                } else {
+                    ps.setNull(4, Types.BIGINT);
+                }
+                ps.setString(5, message.content());
+                ChatMessage.MessageType type = message.messageType() != null
+                        ? message.messageType()
+                        : ChatMessage.MessageType.TEXT;
+                ps.setString(6, type.name());
+                ps.setTimestamp(7, Timestamp.valueOf(message.createdAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return missing.size();
+            }
+        });
+
+        List<Object[]> metadataRows = new ArrayList<>();
+        for (PendingChatMessage message : missing) {
+            // Indexed once the batch transaction commits
+            searchIndex.indexMessage(MessageSearchIndex.Kind.CHAT, message.id(),
+                    message.chatRoomId(), message.content(), message.createdAt());
+
+            Map<String, String> metadata = message.metadata();
+            if (metadata == null || metadata.isEmpty()) {
+                continue;
+            }
+            metadata.forEach((key, value) -> metadataRows.add(new Object[]{message.id(), key, value}));
+        }
+        if (!metadataRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_METADATA_SQL, metadataRows);
+        }
+        return collisions;
+    }
+
+    private static boolean isSameMessage(Object[] row, PendingChatMessage message) {
+        // The column may round fractional seconds, so the times only have to be within a second
+        return Objects.equals(row[0], message.userId())
+                && Objects.equals(row[1], message.chatRoomId())
+                && row[2] != null
+                && Math.abs(Duration.between(((Timestamp) row[2]).toLocalDateTime(), message.createdAt()).toMillis()) < 1000;
+    }
+
+    /**
+     * Caller holds {@code journalLock}.
+     */
+    private void appendRecord(String record) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(record + "\n");
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+    }
+
+    /**
+     * Forces the journal up to {@code upToSequence}. Whoever gets the lock forces every
+     * record appended so far, so the senders waiting behind it usually return at once.
+     */
+    private void forceJournal(long upToSequence) {
+        synchronized (forceLock) {
+            if (forcedSequence >= upToSequence) {
+                return;
+            }
+            long target;
+            synchronized (journalLock) {
+                target = sequence;
+            }
+            try {
+                journal.force(false);
+                forcedSequence = target;
+            } catch (IOException e) {
+                // The message is still queued and will be inserted; only crash safety is lost
+                log.error("Error forcing chat write-behind journal to disk", e);
+            }
+        }
+    }
+
+    private void writeCheckpoint(long lastSequence) {
+        synchronized (journalLock) {
+            try {
+                // Not forced: a lost checkpoint only means the batch is replayed and skipped
+                appendRecord(CHECKPOINT_RECORD + lastSequence);
+            } catch (IOException e) {
+                log.error("Error writing chat write-behind checkpoint {}", lastSequence, e);
+            }
+        }
+    }
+
+    /**
+     * Caller holds {@code flushLock}.
+     */
+    private void compactJournalIfIdle() {
+        synchronized (journalLock) {
+            if (!queue.isEmpty() || !backlog.isEmpty()) {
+                return;
+            }
+            try {
+                journal.truncate(0);
+            } catch (IOException e) {
+                log.error("Error compacting chat write-behind journal", e);
+            }
+        }
+    }
+
+    private List<PendingChatMessage> readUnflushedRecords() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return List.of();
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Keep the file for manual recovery rather than truncating it
+            Path unreadable = journalPath.resolveSibling(journalPath.getFileName() + "." + System.currentTimeMillis() + ".unreadable");
+            Files.move(journalPath, unreadable, StandardCopyOption.REPLACE_EXISTING);
+            log.error("Cannot read chat write-behind journal, moved it to {}", unreadable, e);
+            return List.of();
+        }
+
+        List<PendingChatMessage> records = new ArrayList<>();
+        long checkpoint = 0;
+        for (String line : lines) {
+            try {
+                if (line.startsWith(MESSAGE_RECORD)) {
+                    records.add(objectMapper.readValue(line.substring(MESSAGE_RECORD.length()), PendingChatMessage.class));
+                } else if (line.startsWith(CHECKPOINT_RECORD)) {
+                    checkpoint = Math.max(checkpoint, Long.parseLong(line.substring(CHECKPOINT_RECORD.length()).trim()));
+                }
+            } catch (Exception e) {
+                // A torn final line from a crash mid-write is expected; skip it
+                log.warn("Skipping unreadable chat write-behind journal line");
+            }
+        }
+
+        long lastCheckpoint = checkpoint;
+        List<PendingChatMessage> pending = new ArrayList<>();
+        for (PendingChatMessage record : records) {
+            // New records continue the sequence so the old checkpoints still apply
+            sequence = Math.max(sequence, record.sequence());
+            if (record.sequence() > lastCheckpoint) {
+                pending.add(record);
+            }
+        }
+        forcedSequence = sequence;
+        return pending;
+    }
+}
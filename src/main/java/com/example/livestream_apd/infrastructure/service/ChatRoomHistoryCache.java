@@ -0,0 +1,348 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.application.dto.response.ChatMessageResponse;
+import com.example.livestream_apd.infrastructure.websocket.ChatClusterRelay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-room ring buffer of the newest chat messages, so viewers joining a busy
+ * room get the first history page without touching the database. Deeper pages
+ * and rooms that are not cached fall back to the repository.
+ *
+ * <p>A room is installed by {@link #beginLoad} + {@link #warm} around the first-page
+ * query. Any mutation that lands while the query is running bumps the room's
+ * generation and the stale result is discarded instead of cached. A write-behind message
+ * is pushed when it is acknowledged but its row only exists once the writer's batch
+ * commits, so the writer reports each committed batch through {@link #onMessagesFlushed}
+ * and a load that read the table before that commit is discarded too.</p>
+ *
+ * <p>With the cluster relay enabled, every mutation is published to the other nodes,
+ * which apply it to their own copy of the room. Independently of that, a room is
+ * reloaded from the database once it is older than {@code max-age}, which bounds any
+ * drift from lost or reordered events however busy the room is.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatRoomHistoryCache {
+
+    // Rough per-message overhead (response, user summary, maps, ring slot) on top of the text
+    private static final long MESSAGE_OVERHEAD_BYTES = 512;
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ChatClusterRelay> clusterRelayProvider;
+    private final Map<Long, RoomHistory> rooms = new ConcurrentHashMap<>();
+
+    @Value("${app.chat.history-cache.capacity:100}")
+    private int capacity;
+
+    @Value("${app.chat.history-cache.idle-ttl:600000}")
+    private long idleTtl;
+
+    @Value("${app.chat.history-cache.max-age:300000}")
+    private long maxAge;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    // Null when running single-node (app.websocket.chat.cluster.enabled=false)
+    private ChatClusterRelay clusterRelay;
+
+    private enum EventType { SENT, UPDATED, DELETED, FLUSHED }
+
+    private record HistoryEvent(EventType type, Long roomId, Long messageId, ChatMessageResponse message) {
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        clusterRelay = clusterRelayProvider.getIfAvailable();
+        if (clusterRelay != null) {
+            clusterRelay.subscribeHistoryEvents(this::applyRemoteEvent);
+        }
+
+        hitCounter = Counter.builder("chat.history.cache.requests").tag("result", "hit")
+                .description("First-page chat history requests served from memory")
+                .register(meterRegistry);
+        missCounter = Counter.builder("chat.history.cache.requests").tag("result", "miss")
+                .description("First-page chat history requests that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.cache.rooms", rooms, Map::size)
+                .description("Chat rooms with cached history")
+                .register(meterRegistry);
+        Gauge.builder("chat.history.cache.bytes", this, ChatRoomHistoryCache::estimatedBytes)
+                .description("Estimated heap held by cached chat history")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Serves page 0 from memory when the room is cached and holds enough messages.
+     */
+    public Optional<Page<ChatMessageResponse>> getFirstPage(Long roomId, Pageable pageable) {
+        if (pageable.getPageNumber() != 0) {
+            return Optional.empty();
+        }
+
+        RoomHistory room = rooms.get(roomId);
+        Optional<Page<ChatMessageResponse>> page = room != null ? room.firstPage(pageable) : Optional.empty();
+        (page.isPresent() ? hitCounter : missCounter).increment();
+        return page;
+    }
+
+    /**
+     * Marks the start of a first-page database load and returns the generation that
+     * {@link #warm} must still observe for the result to be cached.
+     */
+    public long beginLoad(Long roomId) {
+        return rooms.computeIfAbsent(roomId, id -> new RoomHistory(capacity, maxAge)).beginLoad();
+    }
+
+    public void warm(Long roomId, long generation, List<ChatMessageResponse> newestFirst, long totalCount) {
+        RoomHistory room = rooms.get(roomId);
+        if (room != null) {
+            room.install(generation, newestFirst, totalCount);
+        }
+    }
+
+    public void onMessageSent(ChatMessageResponse message) {
+        apply(new HistoryEvent(EventType.SENT, message.getChatRoomId(), message.getId(), message));
+        publish(new HistoryEvent(EventType.SENT, message.getChatRoomId(), message.getId(), message));
+    }
+
+    /**
+     * Replaces a cached message after an edit or reaction change.
+     */
+    public void onMessageUpdated(ChatMessageResponse message) {
+        apply(new HistoryEvent(EventType.UPDATED, message.getChatRoomId(), message.getId(), message));
+        publish(new HistoryEvent(EventType.UPDATED, message.getChatRoomId(), message.getId(), message));
+    }
+
+    public void onMessageDeleted(Long roomId, Long messageId) {
+        apply(new HistoryEvent(EventType.DELETED, roomId, messageId, null));
+        publish(new HistoryEvent(EventType.DELETED, roomId, messageId, null));
+    }
+
+    /**
+     * Called by the write-behind writer once a batch with messages for these rooms has
+     * committed; a first-page load still running for one of them may have missed the rows.
+     */
+    public void onMessagesFlushed(Collection<Long> roomIds) {
+        for (Long roomId : roomIds) {
+            apply(new HistoryEvent(EventType.FLUSHED, roomId, null, null));
+            publish(new HistoryEvent(EventType.FLUSHED, roomId, null, null));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.history-cache.eviction-interval:60000}")
+    public void evictIdleRooms() {
+        long now = System.currentTimeMillis();
+        long idleBefore = now - idleTtl;
+        long loadedBefore = now - maxAge;
+        // Busy rooms are dropped too once too old; the next read reloads them
+        rooms.values().removeIf(room -> room.lastAccess < idleBefore || room.loadedBefore(loadedBefore));
+    }
+
+    private void apply(HistoryEvent event) {
+        RoomHistory room = rooms.get(event.roomId());
+        if (room == null) {
+            return;
+        }
+        switch (event.type()) {
+            case SENT -> room.push(event.message());
+            case UPDATED -> room.replace(event.message());
+            case DELETED -> room.remove(event.messageId());
+            case FLUSHED -> room.invalidateLoads();
+        }
+    }
+
+    private void publish(HistoryEvent event) {
+        if (clusterRelay == null) {
+            return;
+        }
+        try {
+            clusterRelay.publishHistoryEvent(objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            // The other nodes catch up when their copy of the room reaches max-age
+            log.warn("Error publishing chat history event for room {}", event.roomId(), e);
+        }
+    }
+
+    private void applyRemoteEvent(String payload) {
+        try {
+            apply(objectMapper.readValue(payload, HistoryEvent.class));
+        } catch (Exception e) {
+            log.warn("Dropping unreadable chat history event: {}", e.getMessage());
+        }
+    }
+
+    private double estimatedBytes() {
+        long total = 0;
+        for (RoomHistory room : rooms.values()) {
+            total += room.estimatedBytes;
+        }
+        return total;
+    }
+
+    private static long sizeOf(ChatMessageResponse message) {
+        return MESSAGE_OVERHEAD_BYTES + (message.getContent() != null ? message.getContent().length() * 2L : 0);
+    }
+
+    /**
+     * Fixed-size ring of the newest messages; logical index 0 is the newest.
+     */
+    private static final class RoomHistory {
+        private final ChatMessageResponse[] ring;
+        private final long maxAge;
+        private int head = -1;
+        private int size;
+        private long totalCount;
+        private long generation;
+        private boolean loaded;
+        private long loadedAt;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile long estimatedBytes;
+
+        RoomHistory(int capacity, long maxAge) {
+            this.ring = new ChatMessageResponse[capacity];
+            this.maxAge = maxAge;
+        }
+
+        synchronized boolean loadedBefore(long time) {
+            return loaded && loadedAt < time;
+        }
+
+        synchronized long beginLoad() {
+            lastAccess = System.currentTimeMillis();
+            return generation;
+        }
+
+        synchronized void install(long expectedGeneration, List<ChatMessageResponse> newestFirst, long total) {
+            if (generation != expectedGeneration) {
+                return;
+            }
+            Arrays.fill(ring, null);
+            head = -1;
+            size = 0;
+            estimatedBytes = 0;
+            int count = Math.min(newestFirst.size(), ring.length);
+            // Oldest first so the newest ends up at logical index 0
+            for (int i = count - 1; i >= 0; i--) {
+                append(newestFirst.get(i));
+            }
+            totalCount = total;
+            loaded = true;
+            loadedAt = System.currentTimeMillis();
+        }
+
+        synchronized Optional<Page<ChatMessageResponse>> firstPage(Pageable pageable) {
+            lastAccess = System.currentTimeMillis();
+            int pageSize = pageable.getPageSize();
+            // Too old to serve: the caller reloads from the database and installs a fresh copy
+            if (!loaded || lastAccess - loadedAt > maxAge || (size < pageSize && size < totalCount)) {
+                return Optional.empty();
+            }
+
+            int count = Math.min(pageSize, size);
+            List<ChatMessageResponse> content = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                content.add(get(i));
+            }
+            return Optional.of(new PageImpl<>(content, pageable, totalCount));
+        }
+
+        synchronized void push(ChatMessageResponse message) {
+            generation++;
+            // Already there when a load that ran after the send was installed first
+            if (loaded && indexOf(message.getId()) < 0) {
+                append(message);
+                totalCount++;
+            }
+        }
+
+        synchronized void invalidateLoads() {
+            generation++;
+        }
+
+        synchronized void replace(ChatMessageResponse updated) {
+            generation++;
+            int index = indexOf(updated.getId());
+            if (loaded && index >= 0) {
+                ChatMessageResponse current = get(index);
+                ring[slot(index)] = updated;
+                estimatedBytes += sizeOf(updated) - sizeOf(current);
+            }
+        }
+
+        synchronized void remove(Long messageId) {
+            generation++;
+            if (!loaded) {
+                return;
+            }
+            int index = indexOf(messageId);
+            if (index >= 0) {
+                estimatedBytes -= sizeOf(get(index));
+                // Shift the newer entries one slot towards the older end, then drop the head
+                for (int i = index; i > 0; i--) {
+                    ring[slot(i)] = get(i - 1);
+                }
+                ring[head] = null;
+                head = (head - 1 + ring.length) % ring.length;
+                size--;
+            }
+            // A message older than the buffer still leaves the room total
+            totalCount = Math.max(0, totalCount - 1);
+        }
+
+        private void append(ChatMessageResponse message) {
+            head = (head + 1) % ring.length;
+            if (size == ring.length) {
+                estimatedBytes -= sizeOf(ring[head]);
+            } else {
+                size++;
+            }
+            ring[head] = message;
+            estimatedBytes += sizeOf(message);
+        }
+
+        private int indexOf(Long messageId) {
+            if (messageId == null) {
+                return -1;
+            }
+            for (int i = 0; i < size; i++) {
+                if (messageId.equals(get(i).getId())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private ChatMessageResponse get(int index) {
+            return ring[slot(index)];
+        }
+
+        private int slot(int index) {
+            return (head - index + ring.length) % ring.length;
+        }
+    }
+}
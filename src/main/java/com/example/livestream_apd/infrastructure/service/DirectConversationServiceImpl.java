@@ -13,6 +13,7 @@ import com.example.livestream_apd.domain.repository.DirectConversationRepository
 import com.example.livestream_apd.domain.repository.DirectMessageRepository;
 import com.example.livestream_apd.domain.repository.UserRepository;
 import com.example.livestream_apd.domain.service.DirectConversationService;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
 import com.example.livestream_apd.utils.TimeUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -21,6 +22,9 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -31,6 +35,8 @@ public class DirectConversationServiceImpl implements DirectConversationService
     private final DirectConversationRepository conversationRepository;
     private final DirectMessageRepository messageRepository;
     private final UserRepository userRepository;
+    private final DirectMessageUnreadCounters unreadCounters;
+    private final MessageSearchIndex searchIndex;
 
     @Override
     @Transactional
@@ -57,6 +63,7 @@ public class DirectConversationServiceImpl implements DirectConversationService
                 if (conversation.isDeletedBy(currentUser)) {
                     conversation.restoreBy(currentUser);
                     conversationRepository.save(conversation);
+                    unreadCounters.onConversationRestored(conversation, currentUserId);
                 }
             } else {
                 conversation = DirectConversation.builder()
@@ -78,6 +85,9 @@ public class DirectConversationServiceImpl implements DirectConversationService
                 messageRepository.save(message);
                 conversation.addMessage(message);
                 conversationRepository.save(conversation);
+                unreadCounters.onMessageSent(conversation, targetUser.getId());
+                searchIndex.indexMessage(MessageSearchIndex.Kind.DIRECT, message.getId(), conversation.getId(),
+                        message.getContent(), message.getCreatedAt());
             }
 
             DirectConversationResponse response = mapToConversationResponse(conversation, currentUser);
@@ -97,20 +107,7 @@ public class DirectConversationServiceImpl implements DirectConversationService
 
             Page<DirectConversation> conversations = conversationRepository.findActiveConversationsByUserId(userId, pageable);
             
-            Page<DirectConversationResponse> conversationResponses = conversations.map(conversation -> 
-                    mapToConversationResponse(conversation, user));
-
-            PagedResponse<DirectConversationResponse> pagedResponse = PagedResponse.<DirectConversationResponse>builder()
-                    .content(conversationResponses.getContent())
-                    .page(conversationResponses.getNumber())
-                    .size(conversationResponses.getSize())
-                    .totalElements(conversationResponses.getTotalElements())
-                    .totalPages(conversationResponses.getTotalPages())
-                    .first(conversationResponses.isFirst())
-                    .last(conversationResponses.isLast())
-                    .build();
-
-            return ApiResponse.success(pagedResponse);
+            return ApiResponse.success(toPagedResponse(conversations, user));
 
         } catch (Exception e) {
             log.error("Lỗi khi lấy danh sách cuộc trò chuyện: {}", e.getMessage(), e);
@@ -175,6 +172,9 @@ public class DirectConversationServiceImpl implements DirectConversationService
                 return ApiResponse.error("Bạn không có quyền xóa cuộc trò chuyện này");
             }
 
+            if (!conversation.isDeletedBy(currentUser)) {
+                unreadCounters.onConversationDeleted(conversation, currentUserId);
+            }
             conversation.deleteBy(currentUser);
             conversationRepository.save(conversation);
 
@@ -244,20 +244,7 @@ public class DirectConversationServiceImpl implements DirectConversationService
 
             Page<DirectConversation> conversations = conversationRepository.searchConversations(userId, query, pageable);
             
-            Page<DirectConversationResponse> conversationResponses = conversations.map(conversation -> 
-                    mapToConversationResponse(conversation, user));
-
-            PagedResponse<DirectConversationResponse> pagedResponse = PagedResponse.<DirectConversationResponse>builder()
-                    .content(conversationResponses.getContent())
-                    .page(conversationResponses.getNumber())
-                    .size(conversationResponses.getSize())
-                    .totalElements(conversationResponses.getTotalElements())
-                    .totalPages(conversationResponses.getTotalPages())
-                    .first(conversationResponses.isFirst())
-                    .last(conversationResponses.isLast())
-                    .build();
-
-            return ApiResponse.success(pagedResponse);
+            return ApiResponse.success(toPagedResponse(conversations, user));
 
         } catch (Exception e) {
             log.error("Lỗi khi tìm kiếm cuộc trò chuyện: {}", e.getMessage(), e);
@@ -273,20 +260,7 @@ public class DirectConversationServiceImpl implements DirectConversationService
 
             Page<DirectConversation> conversations = conversationRepository.findConversationsWithUnreadMessages(userId, pageable);
             
-            Page<DirectConversationResponse> conversationResponses = conversations.map(conversation -> 
-                    mapToConversationResponse(conversation, user));
-
-            PagedResponse<DirectConversationResponse> pagedResponse = PagedResponse.<DirectConversationResponse>builder()
-                    .content(conversationResponses.getContent())
-                    .page(conversationResponses.getNumber())
-                    .size(conversationResponses.getSize())
-                    .totalElements(conversationResponses.getTotalElements())
-                    .totalPages(conversationResponses.getTotalPages())
-                    .first(conversationResponses.isFirst())
-                    .last(conversationResponses.isLast())
-                    .build();
-
-            return ApiResponse.success(pagedResponse);
+            return ApiResponse.success(toPagedResponse(conversations, user));
 
         } catch (Exception e) {
             log.error("Lỗi khi lấy cuộc trò chuyện có tin nhắn chưa đọc: {}", e.getMessage(), e);
@@ -297,8 +271,8 @@ public class DirectConversationServiceImpl implements DirectConversationService
     @Override
     public ApiResponse<Long> getUnreadConversationsCount(Long userId) {
         try {
-            Long count = conversationRepository.countConversationsWithUnreadMessages(userId);
-            return ApiResponse.success(count);
+            Integer count = userRepository.findUnreadConversationsCount(userId).orElse(0);
+            return ApiResponse.success(count.longValue());
 
         } catch (Exception e) {
             log.error("Lỗi khi đếm cuộc trò chuyện chưa đọc: {}", e.getMessage(), e);
@@ -314,6 +288,7 @@ public class DirectConversationServiceImpl implements DirectConversationService
                     .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
 
             int updatedCount = messageRepository.markAllAsRead(conversationId, currentUserId, TimeUtil.nowUtc());
+            unreadCounters.onUnreadRemoved(conversation, currentUserId, updatedCount);
             
             return ApiResponse.success("Đã đánh dấu " + updatedCount + " tin nhắn là đã đọc");
 
@@ -323,23 +298,56 @@ public class DirectConversationServiceImpl implements DirectConversationService
         }
     }
 
+    /**
+     * Builds an inbox page with a fixed number of queries: participants and unread counters
+     * come with the page, then last messages are loaded for all conversations at once.
+     */
+    private PagedResponse<DirectConversationResponse> toPagedResponse(Page<DirectConversation> conversations, User currentUser) {
+        List<Long> conversationIds = conversations.getContent().stream()
+                .map(DirectConversation::getId)
+                .toList();
+
+        Map<Long, DirectMessage> lastMessages = new HashMap<>();
+        if (!conversationIds.isEmpty()) {
+            for (DirectMessage message : messageRepository.findLastMessages(conversationIds)) {
+                lastMessages.put(message.getConversation().getId(), message);
+            }
+        }
+
+        Page<DirectConversationResponse> conversationResponses = conversations.map(conversation ->
+                mapToConversationResponse(conversation, currentUser, lastMessages.get(conversation.getId())));
+
+        return PagedResponse.<DirectConversationResponse>builder()
+                .content(conversationResponses.getContent())
+                .page(conversationResponses.getNumber())
+                .size(conversationResponses.getSize())
+                .totalElements(conversationResponses.getTotalElements())
+                .totalPages(conversationResponses.getTotalPages())
+                .first(conversationResponses.isFirst())
+                .last(conversationResponses.isLast())
+                .build();
+    }
+
     private DirectConversationResponse mapToConversationResponse(DirectConversation conversation, User currentUser) {
+        DirectMessage lastMessage = messageRepository.findLastMessage(conversation.getId()).orElse(null);
+        return mapToConversationResponse(conversation, currentUser, lastMessage);
+    }
+
+    private DirectConversationResponse mapToConversationResponse(DirectConversation conversation, User currentUser,
+                                                                 DirectMessage lastMessage) {
         User otherUser = conversation.getOtherUser(currentUser);
         UserResponse otherUserResponse = mapToUserResponse(otherUser);
         
         DirectMessageResponse lastMessageResponse = null;
-        Optional<DirectMessage> lastMessage = messageRepository.findLastMessage(conversation.getId());
-        if (lastMessage.isPresent()) {
-            lastMessageResponse = mapToMessageResponse(lastMessage.get());
+        if (lastMessage != null) {
+            lastMessageResponse = mapToLastMessageResponse(lastMessage);
         }
-
-        Long unreadCount = conversationRepository.countUnreadMessages(conversation.getId(), currentUser.getId());
         
         return DirectConversationResponse.builder()
                 .id(conversation.getId())
                 .otherUser(otherUserResponse)
                 .lastMessage(lastMessageResponse)
-                .unreadCount(unreadCount)
+                .unreadCount((long) conversation.getUnreadCountFor(currentUser))
                 .isBlocked(conversation.isBlockedBy(currentUser))
                 .isBlockedByOther(conversation.isBlockedBy(otherUser))
                 .lastMessageAt(conversation.getLastMessageAt())
@@ -359,12 +367,17 @@ public class DirectConversationServiceImpl implements DirectConversationService
                 .build();
     }
 
-    private DirectMessageResponse mapToMessageResponse(DirectMessage message) {
+    // Inbox preview: the replied-to message is included one level deep, matching what the
+    // batch query fetches, instead of walking the whole reply chain lazily
+    private DirectMessageResponse mapToLastMessageResponse(DirectMessage message) {
         DirectMessageResponse replyToResponse = null;
         if (message.getReplyToMessage() != null) {
-            replyToResponse = mapToMessageResponse(message.getReplyToMessage());
+            replyToResponse = mapToMessageResponse(message.getReplyToMessage(), null);
         }
+        return mapToMessageResponse(message, replyToResponse);
+    }
 
+    private DirectMessageResponse mapToMessageResponse(DirectMessage message, DirectMessageResponse replyToResponse) {
         return DirectMessageResponse.builder()
                 .id(message.getId())
                 .conversationId(message.getConversation().getId())
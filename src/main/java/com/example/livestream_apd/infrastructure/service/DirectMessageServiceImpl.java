@@ -4,6 +4,7 @@ import com.example.livestream_apd.application.dto.request.EditDirectMessageReque
 import com.example.livestream_apd.application.dto.request.SearchDirectMessageRequest;
 import com.example.livestream_apd.application.dto.request.SendDirectMessageRequest;
 import com.example.livestream_apd.application.dto.response.ApiResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.DirectMessageResponse;
 import com.example.livestream_apd.application.dto.response.PagedResponse;
 import com.example.livestream_apd.application.dto.response.UserResponse;
@@ -14,16 +15,28 @@ import com.example.livestream_apd.domain.repository.DirectConversationRepository
 import com.example.livestream_apd.domain.repository.DirectMessageRepository;
 import com.example.livestream_apd.domain.repository.UserRepository;
 import com.example.livestream_apd.domain.service.DirectMessageService;
+import com.example.livestream_apd.infrastructure.ratelimit.RateLimitPolicy;
+import com.example.livestream_apd.infrastructure.ratelimit.RateLimiter;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
+import com.example.livestream_apd.utils.CursorPaging;
+import com.example.livestream_apd.utils.MessageCursor;
 import com.example.livestream_apd.utils.TimeUtil;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,11 +47,25 @@ public class DirectMessageServiceImpl implements DirectMessageService {
     private final DirectMessageRepository messageRepository;
     private final DirectConversationRepository conversationRepository;
     private final UserRepository userRepository;
+    private final RateLimiter rateLimiter;
+    private final DirectMessageUnreadCounters unreadCounters;
+    private final MessageSearchIndex searchIndex;
 
-    // Rate limiting constants
-    private static final int MAX_MESSAGES_PER_MINUTE = 30;
     private static final int MAX_MESSAGE_LENGTH = 4000;
 
+    @Value("${app.rate-limit.direct-messages-per-minute:30}")
+    private int maxMessagesPerMinute;
+
+    @Value("${app.pagination.max-cursor-size:100}")
+    private int maxCursorSize;
+
+    private RateLimitPolicy sendMessageLimit;
+
+    @PostConstruct
+    public void init() {
+        sendMessageLimit = RateLimitPolicy.perMinute("direct-message", maxMessagesPerMinute);
+    }
+
     @Override
     @Transactional
     public ApiResponse<DirectMessageResponse> sendMessage(Long currentUserId, SendDirectMessageRequest request) {
@@ -61,11 +88,7 @@ public class DirectMessageServiceImpl implements DirectMessageService {
             }
 
             // Rate limiting check
-            LocalDateTime oneMinuteAgo = TimeUtil.nowUtc().minusMinutes(1);
-            List<DirectMessage> recentMessages = messageRepository.findRecentMessagesBySender(
-                    request.getConversationId(), currentUserId, oneMinuteAgo);
-            
-            if (recentMessages.size() >= MAX_MESSAGES_PER_MINUTE) {
+            if (!rateLimiter.tryAcquire(sendMessageLimit, currentUserId)) {
                 return ApiResponse.error("Bạn đang gửi tin nhắn quá nhanh. Vui lòng chờ một chút.");
             }
 
@@ -98,6 +121,9 @@ public class DirectMessageServiceImpl implements DirectMessageService {
             // Update conversation's last message time
             conversation.setLastMessageAt(message.getCreatedAt());
             conversationRepository.save(conversation);
+            unreadCounters.onMessageSent(conversation, otherUser.getId());
+            searchIndex.indexMessage(MessageSearchIndex.Kind.DIRECT, message.getId(), conversation.getId(),
+                    message.getContent(), message.getCreatedAt());
 
             DirectMessageResponse response = mapToMessageResponse(message);
             return ApiResponse.success("Tin nhắn đã được gửi thành công", response);
@@ -136,6 +162,26 @@ public class DirectMessageServiceImpl implements DirectMessageService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ApiResponse<CursorResponse<DirectMessageResponse>> getMessagesByCursor(
+            Long conversationId, Long currentUserId, String cursor, int size) {
+        try {
+            conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
+                    .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
+
+            MessageCursor position = MessageCursor.decode(cursor);
+            Slice<DirectMessage> messages = messageRepository.findMessagesBeforeCursor(
+                    conversationId, position.createdAt(), position.id(), CursorPaging.firstSlice(size, maxCursorSize));
+
+            return ApiResponse.success(toCursorResponse(messages));
+
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy tin nhắn: {}", e.getMessage(), e);
+            return ApiResponse.error("Không thể lấy tin nhắn: " + e.getMessage());
+        }
+    }
+
     @Override
     public ApiResponse<DirectMessageResponse> getMessage(Long messageId, Long currentUserId) {
         try {
@@ -177,6 +223,8 @@ public class DirectMessageServiceImpl implements DirectMessageService {
             message.setContent(request.getContent().trim());
             message.markAsEdited();
             message = messageRepository.save(message);
+            searchIndex.indexMessage(MessageSearchIndex.Kind.DIRECT, message.getId(), message.getConversation().getId(),
+                    message.getContent(), message.getCreatedAt());
 
             DirectMessageResponse response = mapToMessageResponse(message);
             return ApiResponse.success("Tin nhắn đã được sửa thành công", response);
@@ -199,8 +247,18 @@ public class DirectMessageServiceImpl implements DirectMessageService {
                 return ApiResponse.error("Bạn không có quyền xóa tin nhắn này");
             }
 
+            boolean wasUnread = !message.getIsRead() && !message.getIsDeleted();
             message.markAsDeleted();
             messageRepository.save(message);
+            searchIndex.deleteMessage(MessageSearchIndex.Kind.DIRECT, messageId);
+
+            if (wasUnread) {
+                DirectConversation conversation = message.getConversation();
+                Long recipientId = conversation.getUser1().getId().equals(currentUserId)
+                        ? conversation.getUser2().getId()
+                        : conversation.getUser1().getId();
+                unreadCounters.onUnreadRemoved(conversation, recipientId, 1);
+            }
 
             return ApiResponse.success("Tin nhắn đã được xóa thành công");
 
@@ -218,14 +276,14 @@ public class DirectMessageServiceImpl implements DirectMessageService {
                     .orElseThrow(() -> new RuntimeException("Tin nhắn không tồn tại"));
 
             // Check if user has access to this conversation
-            conversationRepository.findActiveConversationByIdAndUserId(message.getConversation().getId(), currentUserId)
+            DirectConversation conversation = conversationRepository.findActiveConversationByIdAndUserId(
+                    message.getConversation().getId(), currentUserId)
                     .orElseThrow(() -> new RuntimeException("Bạn không có quyền truy cập tin nhắn này"));
 
-            // Only mark as read if current user is not the sender
-            if (!message.getSender().getId().equals(currentUserId) && !message.getIsRead()) {
-                message.markAsRead();
-                messageRepository.save(message);
-            }
+            // Only mark as read if current user is not the sender; the conditional update
+            // makes concurrent reads of the same message count once
+            int updated = messageRepository.markAsRead(messageId, currentUserId, TimeUtil.nowUtc());
+            unreadCounters.onUnreadRemoved(conversation, currentUserId, updated);
 
             return ApiResponse.success("Tin nhắn đã được đánh dấu là đã đọc");
 
@@ -239,10 +297,11 @@ public class DirectMessageServiceImpl implements DirectMessageService {
     @Transactional
     public ApiResponse<String> markAllMessagesAsRead(Long conversationId, Long currentUserId) {
         try {
-            conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
+            DirectConversation conversation = conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
                     .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
 
             int updatedCount = messageRepository.markAllAsRead(conversationId, currentUserId, TimeUtil.nowUtc());
+            unreadCounters.onUnreadRemoved(conversation, currentUserId, updatedCount);
             
             return ApiResponse.success("Đã đánh dấu " + updatedCount + " tin nhắn là đã đọc");
 
@@ -252,6 +311,25 @@ public class DirectMessageServiceImpl implements DirectMessageService {
         }
     }
 
+    @Override
+    @Transactional
+    public ApiResponse<Integer> markMessagesAsReadUpTo(Long conversationId, Long currentUserId, Long upToMessageId) {
+        try {
+            DirectConversation conversation = conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
+                    .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
+
+            // Message ids are IDENTITY, so "up to id" covers everything the reader has scrolled past
+            int updatedCount = messageRepository.markAsReadUpTo(conversationId, currentUserId, upToMessageId, TimeUtil.nowUtc());
+            unreadCounters.onUnreadRemoved(conversation, currentUserId, updatedCount);
+
+            return ApiResponse.success(updatedCount);
+
+        } catch (Exception e) {
+            log.error("Lỗi khi đánh dấu tin nhắn đã đọc: {}", e.getMessage(), e);
+            return ApiResponse.error("Không thể đánh dấu tin nhắn đã đọc: " + e.getMessage());
+        }
+    }
+
     @Override
     public ApiResponse<PagedResponse<DirectMessageResponse>> searchMessages(
             Long conversationId, Long currentUserId, SearchDirectMessageRequest request) {
@@ -259,11 +337,23 @@ public class DirectMessageServiceImpl implements DirectMessageService {
             conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
                     .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
 
-            Page<DirectMessage> messages = messageRepository.searchInConversation(
-                    conversationId, request.getQuery(), 
-                    org.springframework.data.domain.PageRequest.of(request.getPage(), request.getSize()));
-            
-            Page<DirectMessageResponse> messageResponses = messages.map(this::mapToMessageResponse);
+            Pageable pageable = PageRequest.of(request.getPage(), request.getSize());
+            Optional<MessageSearchIndex.SearchHits> hits = searchIndex.search(
+                    MessageSearchIndex.Kind.DIRECT, conversationId, request.getQuery(), pageable);
+
+            Page<DirectMessageResponse> messageResponses;
+            if (hits.isPresent()) {
+                List<Long> messageIds = hits.get().messageIds();
+                List<DirectMessageResponse> content = messageRepository.findAllWithSenderByIdIn(messageIds).stream()
+                        .sorted(Comparator.comparingInt(message -> messageIds.indexOf(message.getId())))
+                        .map(this::mapToMessageResponse)
+                        .toList();
+                messageResponses = new PageImpl<>(content, pageable, hits.get().totalHits());
+            } else {
+                Page<DirectMessage> messages = messageRepository.searchInConversation(
+                        conversationId, request.getQuery(), pageable);
+                messageResponses = messages.map(this::mapToMessageResponse);
+            }
 
             PagedResponse<DirectMessageResponse> pagedResponse = PagedResponse.<DirectMessageResponse>builder()
                     .content(messageResponses.getContent())
@@ -283,6 +373,26 @@ public class DirectMessageServiceImpl implements DirectMessageService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ApiResponse<CursorResponse<DirectMessageResponse>> searchMessagesByCursor(
+            Long conversationId, Long currentUserId, String query, String cursor, int size) {
+        try {
+            conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
+                    .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
+
+            MessageCursor position = MessageCursor.decode(cursor);
+            Slice<DirectMessage> messages = messageRepository.searchInConversationBeforeCursor(
+                    conversationId, query, position.createdAt(), position.id(), CursorPaging.firstSlice(size, maxCursorSize));
+
+            return ApiResponse.success(toCursorResponse(messages));
+
+        } catch (Exception e) {
+            log.error("Lỗi khi tìm kiếm tin nhắn: {}", e.getMessage(), e);
+            return ApiResponse.error("Không thể tìm kiếm tin nhắn: " + e.getMessage());
+        }
+    }
+
     @Override
     public ApiResponse<PagedResponse<DirectMessageResponse>> getMediaMessages(
             Long conversationId, Long currentUserId, 
@@ -313,6 +423,27 @@ public class DirectMessageServiceImpl implements DirectMessageService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ApiResponse<CursorResponse<DirectMessageResponse>> getMediaMessagesByCursor(
+            Long conversationId, Long currentUserId, 
+            List<DirectMessage.MessageType> mediaTypes, String cursor, int size) {
+        try {
+            conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
+                    .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
+
+            MessageCursor position = MessageCursor.decode(cursor);
+            Slice<DirectMessage> messages = messageRepository.findMediaMessagesBeforeCursor(
+                    conversationId, mediaTypes, position.createdAt(), position.id(), CursorPaging.firstSlice(size, maxCursorSize));
+
+            return ApiResponse.success(toCursorResponse(messages));
+
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy tin nhắn media: {}", e.getMessage(), e);
+            return ApiResponse.error("Không thể lấy tin nhắn media: " + e.getMessage());
+        }
+    }
+
     @Override
     public ApiResponse<List<DirectMessageResponse>> getNewMessages(
             Long conversationId, Long currentUserId, LocalDateTime after) {
@@ -340,8 +471,8 @@ public class DirectMessageServiceImpl implements DirectMessageService {
             conversationRepository.findActiveConversationByIdAndUserId(conversationId, currentUserId)
                     .orElseThrow(() -> new RuntimeException("Cuộc trò chuyện không tồn tại hoặc bạn không có quyền truy cập"));
 
-            Long count = messageRepository.countUnreadMessages(conversationId, currentUserId);
-            return ApiResponse.success(count);
+            Integer count = conversationRepository.findUnreadCount(conversationId, currentUserId);
+            return ApiResponse.success(count.longValue());
 
         } catch (Exception e) {
             log.error("Lỗi khi đếm tin nhắn chưa đọc: {}", e.getMessage(), e);
@@ -349,6 +480,11 @@ public class DirectMessageServiceImpl implements DirectMessageService {
         }
     }
 
+    private CursorResponse<DirectMessageResponse> toCursorResponse(Slice<DirectMessage> messages) {
+        return CursorResponse.fromSlice(messages, this::mapToMessageResponse,
+                last -> MessageCursor.encode(last.getCreatedAt(), last.getId()));
+    }
+
     private DirectMessageResponse mapToMessageResponse(DirectMessage message) {
         DirectMessageResponse replyToResponse = null;
         if (message.getReplyToMessage() != null && !message.getReplyToMessage().getIsDeleted()) {
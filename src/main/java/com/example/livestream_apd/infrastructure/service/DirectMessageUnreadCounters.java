@@ -0,0 +1,141 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.DirectConversation;
+import com.example.livestream_apd.domain.repository.DirectConversationRepository;
+import com.example.livestream_apd.domain.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Maintains the materialized unread counters: one per (conversation, participant) on
+ * {@link DirectConversation} and the badge totals on the user. Every change is an
+ * atomic UPDATE inside the caller's transaction. The conversation row is updated first,
+ * so its row lock orders concurrent changes and the zero/non-zero transitions that drive
+ * the unread-conversation total are seen exactly once.
+ *
+ * <p>Conversations a user deleted still count messages, but are left out of that user's
+ * totals until restored. A reconciliation recomputes everything from
+ * {@code direct_messages} to repair any drift: once in the background at startup, which
+ * also backfills counters for existing data, and then on a schedule. It walks both
+ * tables in id ranges of {@code unread-reconcile-chunk-size}, one short transaction per
+ * range.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DirectMessageUnreadCounters {
+
+    private final DirectConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    @Value("${app.direct-message.unread-reconcile-chunk-size:1000}")
+    private long chunkSize;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMessageSent(DirectConversation conversation, Long recipientId) {
+        conversationRepository.addUnreadCount(conversation.getId(), recipientId, 1);
+        if (isDeletedBy(conversation, recipientId)) {
+            return;
+        }
+
+        int unread = conversationRepository.findUnreadCount(conversation.getId(), recipientId);
+        userRepository.addUnreadCounts(recipientId, 1, unread == 1 ? 1 : 0);
+    }
+
+    /**
+     * Removes messages from a participant's unread count, either because they were read
+     * or because the sender deleted them while still unread.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onUnreadRemoved(DirectConversation conversation, Long userId, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        conversationRepository.addUnreadCount(conversation.getId(), userId, -count);
+        if (isDeletedBy(conversation, userId)) {
+            return;
+        }
+
+        int unread = conversationRepository.findUnreadCount(conversation.getId(), userId);
+        userRepository.addUnreadCounts(userId, -count, unread == 0 ? -1 : 0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onConversationDeleted(DirectConversation conversation, Long userId) {
+        int unread = conversationRepository.findUnreadCount(conversation.getId(), userId);
+        if (unread > 0) {
+            userRepository.addUnreadCounts(userId, -unread, -1);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onConversationRestored(DirectConversation conversation, Long userId) {
+        int unread = conversationRepository.findUnreadCount(conversation.getId(), userId);
+        if (unread > 0) {
+            userRepository.addUnreadCounts(userId, unread, 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        // Off the scheduler thread, so a large backfill does not hold up other jobs
+        Thread thread = new Thread(this::reconcile, "unread-counter-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Scheduled(initialDelayString = "${app.direct-message.unread-reconcile-interval:3600000}",
+            fixedDelayString = "${app.direct-message.unread-reconcile-interval:3600000}")
+    public void reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            // Conversations first: the user totals are summed from their counters
+            long conversations = reconcileInChunks(conversationRepository::findMaxId, conversationRepository::reconcileUnreadCounts);
+            long users = reconcileInChunks(userRepository::findMaxId, userRepository::reconcileUnreadCounts);
+            log.info("Reconciled direct-message unread counters ({} conversations, {} users) in {} ms",
+                    conversations, users, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Error reconciling direct-message unread counters", e);
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    private long reconcileInChunks(Supplier<Long> maxId, BiFunction<Long, Long, Integer> reconcileRange) {
+        long upTo = maxId.get();
+        long updated = 0;
+        for (long fromId = 1; fromId <= upTo; fromId += chunkSize) {
+            long from = fromId;
+            long to = fromId + chunkSize - 1;
+            Integer rows = transactionTemplate.execute(status -> reconcileRange.apply(from, to));
+            updated += rows != null ? rows : 0;
+        }
+        return updated;
+    }
+
+    // Compares ids only, so lazy participant proxies are never initialized
+    private boolean isDeletedBy(DirectConversation conversation, Long userId) {
+        if (userId.equals(conversation.getUser1().getId())) {
+            return conversation.getUser1DeletedAt() != null;
+        }
+        return conversation.getUser2DeletedAt() != null;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.repository.UserRepository;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cached follow graph. For each viewer it keeps who they follow and who follows them as
+ * sorted {@code long[]} arrays, so checking a relationship is a binary search in memory
+ * instead of a join over {@code user_follows}, and a whole list of users is resolved
+ * with {@link #relationships} in one call.
+ *
+ * <p>Adjacency is loaded per viewer on first use and updated in place after follow,
+ * unfollow and block commit on this node. Entries expire after {@code ttl}, which bounds
+ * how long a change made on another node stays invisible, so the graph only drives
+ * display flags; access checks query the database. Sides larger than
+ * {@code max-cached-edges} are not cached; lookups against them run one batched
+ * {@code IN} query for the requested ids instead.</p>
+ *
+ * <p>At most {@code max-cached-users} users are cached; loading one more evicts the
+ * oldest load. Follow changes bump a generation for both users, and a load whose
+ * database read raced such a change is used for that request only instead of being
+ * cached, so the change cannot be lost until the entry expires.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FollowGraph {
+
+    /**
+     * Relationship flags for {@code targetIds}, by position: bit {@code i} of
+     * {@code following} is set when the viewer follows {@code targetIds.get(i)}, and bit
+     * {@code i} of {@code followedBy} when that user follows the viewer.
+     */
+    public record Relationships(List<Long> targetIds, BitSet following, BitSet followedBy) {
+
+        public boolean isFollowing(int index) {
+            return following.get(index);
+        }
+
+        public boolean isFollowedBy(int index) {
+            return followedBy.get(index);
+        }
+    }
+
+    private static final long[] EMPTY = new long[0];
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, Adjacency> adjacency = new ConcurrentHashMap<>();
+    // Oldest load first as (user id, loadedAt); may hold entries already evicted or reloaded, which are skipped
+    private final Queue<Map.Entry<Long, Long>> loadOrder = new ConcurrentLinkedQueue<>();
+    // Bumped per user stripe by every follow change; two users sharing a stripe only cost a skipped cache fill
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Value("${app.follow-graph.ttl:300000}")
+    private long ttl;
+
+    @Value("${app.follow-graph.max-cached-edges:50000}")
+    private int maxCachedEdges;
+
+    @Value("${app.follow-graph.max-cached-users:20000}")
+    private int maxCachedUsers;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("follow.graph.cached.users", adjacency, Map::size)
+                .description("Users with cached follow adjacency")
+                .register(meterRegistry);
+    }
+
+    public Relationships relationships(Long viewerId, List<Long> targetIds) {
+        BitSet following = new BitSet(targetIds.size());
+        BitSet followedBy = new BitSet(targetIds.size());
+        if (viewerId == null || targetIds.isEmpty()) {
+            return new Relationships(targetIds, following, followedBy);
+        }
+
+        Adjacency viewer = load(viewerId);
+        Set<Long> followingIds = viewer.following != null ? null
+                : new HashSet<>(userRepository.findFollowingIdsAmong(viewerId, targetIds));
+        Set<Long> followerIds = viewer.followers != null ? null
+                : new HashSet<>(userRepository.findFollowerIdsAmong(viewerId, targetIds));
+        for (int i = 0; i < targetIds.size(); i++) {
+            Long targetId = targetIds.get(i);
+            if (targetId == null) {
+                continue;
+            }
+            following.set(i, followingIds != null ? followingIds.contains(targetId) : contains(viewer.following, targetId));
+            followedBy.set(i, followerIds != null ? followerIds.contains(targetId) : contains(viewer.followers, targetId));
+        }
+        return new Relationships(targetIds, following, followedBy);
+    }
+
+    public void onFollowed(Long followerId, Long followingId) {
+        TransactionCallbacks.afterCommit(() -> {
+            update(followerId, entry -> entry.withFollowing(followingId, true));
+            update(followingId, entry -> entry.withFollower(followerId, true));
+        });
+    }
+
+    public void onUnfollowed(Long followerId, Long followingId) {
+        TransactionCallbacks.afterCommit(() -> {
+            update(followerId, entry -> entry.withFollowing(followingId, false));
+            update(followingId, entry -> entry.withFollower(followerId, false));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.follow-graph.eviction-interval:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        adjacency.values().removeIf(entry -> entry.isExpired(now, ttl));
+        // Drops queue entries whose load was evicted or replaced
+        loadOrder.removeIf(load -> !isCurrentLoad(load));
+    }
+
+    private void update(Long userId, UnaryOperator<Adjacency> change) {
+        // Runs under the key's lock, so a load installing this user sees either the bump or the updated entry
+        adjacency.compute(userId, (id, entry) -> {
+            generations.incrementAndGet(stripe(id));
+            return entry != null ? change.apply(entry) : null;
+        });
+    }
+
+    private Adjacency load(Long userId) {
+        long now = System.currentTimeMillis();
+        Adjacency cached = adjacency.get(userId);
+        if (cached != null && !cached.isExpired(now, ttl)) {
+            return cached;
+        }
+
+        long generation = generations.get(stripe(userId));
+        PageRequest limit = PageRequest.of(0, maxCachedEdges + 1);
+        long[] following = toSortedArray(userRepository.findFollowingIdsAfter(userId, 0L, limit));
+        long[] followers = toSortedArray(userRepository.findFollowerIdsAfter(userId, 0L, limit));
+        Adjacency loaded = new Adjacency(following, followers, now);
+        boolean[] installed = new boolean[1];
+        Adjacency current = adjacency.compute(userId, (id, existing) -> {
+            // Another request may have loaded the same user meanwhile; keep whichever entry is still fresh
+            if (existing != null && !existing.isExpired(now, ttl)) {
+                return existing;
+            }
+            // A follow change committed during the read, which may have missed it
+            if (generations.get(stripe(id)) != generation) {
+                return existing;
+            }
+            installed[0] = true;
+            return loaded;
+        });
+        if (installed[0]) {
+            loadOrder.add(new AbstractMap.SimpleImmutableEntry<>(userId, now));
+            evictOldestOverLimit();
+        }
+        return current != null && !current.isExpired(now, ttl) ? current : loaded;
+    }
+
+    private void evictOldestOverLimit() {
+        while (adjacency.size() > maxCachedUsers) {
+            Map.Entry<Long, Long> oldest = loadOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            // Only removes the user if the entry is still the one queued for it
+            adjacency.computeIfPresent(oldest.getKey(), (id, entry) -> entry.loadedAt() == oldest.getValue() ? null : entry);
+        }
+    }
+
+    private boolean isCurrentLoad(Map.Entry<Long, Long> load) {
+        Adjacency entry = adjacency.get(load.getKey());
+        return entry != null && entry.loadedAt() == load.getValue();
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (GENERATION_STRIPES - 1);
+    }
+
+    private long[] toSortedArray(List<Long> ids) {
+        if (ids.size() > maxCachedEdges) {
+            return null;
+        }
+        long[] sorted = ids.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static boolean contains(long[] sorted, long id) {
+        return Arrays.binarySearch(sorted, id) >= 0;
+    }
+
+    /**
+     * Immutable adjacency of one user; {@code null} marks a side too large to cache.
+     */
+    private record Adjacency(long[] following, long[] followers, long loadedAt) {
+
+        boolean isExpired(long now, long ttl) {
+            return now - loadedAt > ttl;
+        }
+
+        Adjacency withFollowing(long userId, boolean present) {
+            return new Adjacency(update(following, userId, present), followers, loadedAt);
+        }
+
+        Adjacency withFollower(long userId, boolean present) {
+            return new Adjacency(following, update(followers, userId, present), loadedAt);
+        }
+
+        private static long[] update(long[] sorted, long id, boolean present) {
+            if (sorted == null) {
+                return null;
+            }
+            int index = Arrays.binarySearch(sorted, id);
+            if (present == index >= 0) {
+                return sorted;
+            }
+            if (present) {
+                int insertAt = -index - 1;
+                long[] updated = new long[sorted.length + 1];
+                System.arraycopy(sorted, 0, updated, 0, insertAt);
+                updated[insertAt] = id;
+                System.arraycopy(sorted, insertAt, updated, insertAt + 1, sorted.length - insertAt);
+                return updated;
+            }
+            if (sorted.length == 1) {
+                return EMPTY;
+            }
+            long[] updated = new long[sorted.length - 1];
+            System.arraycopy(sorted, 0, updated, 0, index);
+            System.arraycopy(sorted, index + 1, updated, index, sorted.length - index - 1);
+            return updated;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.Post;
+import com.example.livestream_apd.domain.repository.PostRepository;
+import com.example.livestream_apd.domain.repository.UserRepository;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed home timelines: one Redis sorted set of post ids per user, scored by post
+ * id (identity-generated, so id order is creation order). Public posts are pushed to the
+ * author's and every follower's set after commit; authors with at least
+ * {@code fanout-follower-limit} followers only write their own set, and their posts are
+ * pulled from the database and merged in when a follower reads.
+ *
+ * <p>Sets are built from the database on the first read and only ever appended to once
+ * they exist, so a fan-out never creates a partial timeline. A fan-out that ran between
+ * the build query and the write is caught by re-reading posts above the newest built id.
+ * Every built set holds a sentinel member with score 0, so an empty timeline is still
+ * a key and is not rebuilt on every read. Fan-outs send one command per timeline in a
+ * pipeline rather than one multi-key script, which Redis Cluster would reject as
+ * CROSSSLOT. Deletes and posts made
+ * private are removed the same way; readers also drop ids whose post is gone or no
+ * longer public, which covers anything a removal missed. Pages deeper than
+ * {@code max-size}, and any Redis failure, fall back to the database query.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HomeTimelineStore {
+
+    public record TimelineSlice(List<Long> postIds, long total) {
+    }
+
+    private static final String KEY_PREFIX = "timeline:home:";
+    // Marks a built timeline; post ids are positive, so score 0 never collides with a post
+    private static final String SENTINEL = "0";
+
+    // Appends to one timeline if it already exists and trims it to the newest ARGV[3] members
+    private static final byte[] PUSH_SCRIPT = (
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+            "  redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2]) " +
+            "  redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[3]) - 1) " +
+            "end " +
+            "return 0").getBytes(StandardCharsets.UTF_8);
+
+    // Returns the post count followed by the requested range, or -1 if the timeline is not
+    // built, and slides the expiry of timelines in use. The sentinel is excluded by score
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {'-1'} end " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "local size = redis.call('ZCOUNT', KEYS[1], '(0', '+inf') " +
+            "local ids = redis.call('ZREVRANGEBYSCORE', KEYS[1], '+inf', '(0', 'LIMIT', ARGV[1], ARGV[2] - ARGV[1] + 1) " +
+            "table.insert(ids, 1, tostring(size)) " +
+            "return ids",
+            List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+
+    @Value("${app.timeline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.timeline.max-size:800}")
+    private int maxSize;
+
+    @Value("${app.timeline.fanout-follower-limit:10000}")
+    private int fanOutFollowerLimit;
+
+    @Value("${app.timeline.fanout-batch-size:500}")
+    private int fanOutBatchSize;
+
+    @Value("${app.timeline.fanout-queue-capacity:10000}")
+    private int fanOutQueueCapacity;
+
+    @Value("${app.timeline.ttl:604800000}")
+    private long ttl;
+
+    private ExecutorService fanOutExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        // A single worker keeps a post's removal behind its own fan-out
+        fanOutExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(fanOutQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "timeline-fanout");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> log.warn("Timeline fan-out queue is full, dropping update"));
+        log.info("Home timeline store enabled (max size {}, fan-out follower limit {})", maxSize, fanOutFollowerLimit);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Pushes a post that became visible, on create or when made public, to the author's
+     * timeline and, below the follower limit, to every follower's.
+     */
+    public void onPostPublished(Post post) {
+        if (enabled) {
+            Long postId = post.getId();
+            Long authorId = post.getUser().getId();
+            boolean pulled = isPulledAuthor(post.getUser().getFollowersCount());
+            TransactionCallbacks.afterCommit(() -> fanOut(true, postId, authorId, pulled));
+        }
+    }
+
+    /**
+     * Removes a post that was deleted or made private from the timelines it was pushed to.
+     */
+    public void onPostHidden(Post post) {
+        if (enabled) {
+            Long postId = post.getId();
+            Long authorId = post.getUser().getId();
+            boolean pulled = isPulledAuthor(post.getUser().getFollowersCount());
+            TransactionCallbacks.afterCommit(() -> fanOut(false, postId, authorId, pulled));
+        }
+    }
+
+    /**
+     * Drops a user's timeline after they follow or unfollow someone; it is rebuilt from
+     * the database on the next read.
+     */
+    public void invalidate(Long userId) {
+        if (enabled) {
+            TransactionCallbacks.afterCommit(() -> {
+                try {
+                    redisTemplate.delete(key(userId));
+                } catch (Exception e) {
+                    log.error("Error invalidating home timeline of user {}: {}", userId, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads one page of post ids, newest first, merging in posts from followed authors
+     * above the fan-out limit. Empty when the store is disabled, the page is deeper than
+     * the stored window or Redis is unavailable; callers then use the database query.
+     */
+    public Optional<TimelineSlice> read(Long userId, Pageable pageable) {
+        long offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+        if (!enabled || offset + size > maxSize) {
+            return Optional.empty();
+        }
+
+        try {
+            List<Long> pulled = postRepository.findPulledTimelinePostIds(userId, fanOutFollowerLimit,
+                    PageRequest.of(0, (int) offset + size + 1));
+            // Without pulled posts the page is read directly; otherwise both sources are read from the top and merged
+            long start = pulled.isEmpty() ? offset : 0;
+            long end = offset + size - 1;
+
+            List<?> result = redisTemplate.execute(READ_SCRIPT, List.of(key(userId)),
+                    String.valueOf(start), String.valueOf(end), String.valueOf(ttl));
+            long stored = result == null || result.isEmpty() ? -1 : Long.parseLong(result.get(0).toString());
+            List<Long> pushed = new ArrayList<>();
+            if (stored < 0) {
+                List<Long> built = build(userId);
+                stored = built.size();
+                pushed.addAll(built.subList((int) Math.min(start, built.size()), (int) Math.min(end + 1, built.size())));
+            } else {
+                for (int i = 1; i < result.size(); i++) {
+                    pushed.add(Long.parseLong(result.get(i).toString()));
+                }
+            }
+
+            if (pulled.isEmpty()) {
+                return Optional.of(new TimelineSlice(pushed, stored));
+            }
+
+            // Authors who crossed the limit may still have older posts in the stored set, hence the de-duplication
+            Set<Long> merged = new LinkedHashSet<>(pushed);
+            merged.addAll(pulled);
+            List<Long> newestFirst = new ArrayList<>(merged);
+            newestFirst.sort(Comparator.reverseOrder());
+            List<Long> page = newestFirst.subList((int) Math.min(offset, newestFirst.size()),
+                    (int) Math.min(offset + size, newestFirst.size()));
+            return Optional.of(new TimelineSlice(new ArrayList<>(page), stored + pulled.size()));
+        } catch (Exception e) {
+            log.error("Error reading home timeline of user {}, falling back to the database: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes ids a reader found deleted or no longer public.
+     */
+    public void evict(Long userId, List<Long> postIds) {
+        if (!enabled || postIds.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(key(userId), postIds.stream().map(String::valueOf).toArray());
+        } catch (Exception e) {
+            log.error("Error evicting stale posts from home timeline of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fanOutExecutor == null) {
+            return;
+        }
+        fanOutExecutor.shutdown();
+        try {
+            if (!fanOutExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Timeline fan-out did not finish before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Long> build(Long userId) {
+        String key = key(userId);
+        List<Long> postIds = postRepository.findTimelinePostIds(userId, fanOutFollowerLimit, PageRequest.of(0, maxSize));
+        Set<ZSetOperations.TypedTuple<String>> entries = tuples(postIds);
+        entries.add(new DefaultTypedTuple<>(SENTINEL, 0.0));
+        redisTemplate.opsForZSet().add(key, entries);
+        redisTemplate.expire(key, Duration.ofMillis(ttl));
+
+        // A post committed after the query may have been fanned out before the key existed
+        Long builtUpTo = postIds.isEmpty() ? 0L : postIds.get(0);
+        List<Long> missed = postRepository.findTimelinePostIdsAfter(userId, fanOutFollowerLimit, builtUpTo,
+                PageRequest.of(0, maxSize));
+        if (missed.isEmpty()) {
+            return postIds;
+        }
+        redisTemplate.opsForZSet().add(key, tuples(missed));
+        redisTemplate.opsForZSet().removeRange(key, 0, -(maxSize + 1) - 1L);
+
+        List<Long> newestFirst = new ArrayList<>(missed);
+        newestFirst.addAll(postIds);
+        return newestFirst.subList(0, Math.min(maxSize, newestFirst.size()));
+    }
+
+    private static Set<ZSetOperations.TypedTuple<String>> tuples(List<Long> postIds) {
+        Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>();
+        for (Long postId : postIds) {
+            entries.add(new DefaultTypedTuple<>(String.valueOf(postId), postId.doubleValue()));
+        }
+        return entries;
+    }
+
+    private void fanOut(boolean push, Long postId, Long authorId, boolean authorOnly) {
+        fanOutExecutor.execute(() -> {
+            try {
+                apply(push, postId, List.of(authorId));
+                if (authorOnly) {
+                    return;
+                }
+
+                Long afterId = 0L;
+                Pageable batch = PageRequest.of(0, fanOutBatchSize);
+                List<Long> followerIds;
+                do {
+                    followerIds = userRepository.findFollowerIdsAfter(authorId, afterId, batch);
+                    if (!followerIds.isEmpty()) {
+                        apply(push, postId, followerIds);
+                        afterId = followerIds.get(followerIds.size() - 1);
+                    }
+                } while (followerIds.size() == fanOutBatchSize);
+            } catch (Exception e) {
+                log.error("Error fanning out post {} of user {} to home timelines: {}", postId, authorId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Pushes or removes the post on each user's timeline, one single-key command per
+     * timeline sent in one pipeline, so the keys may live in different cluster slots.
+     */
+    private void apply(boolean push, Long postId, List<Long> userIds) {
+        // The post id is both the member and its score
+        byte[] member = String.valueOf(postId).getBytes(StandardCharsets.UTF_8);
+        // One more than max-size, for the sentinel
+        byte[] limit = String.valueOf(maxSize + 1).getBytes(StandardCharsets.UTF_8);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : userIds) {
+                byte[] key = key(userId).getBytes(StandardCharsets.UTF_8);
+                if (push) {
+                    connection.scriptingCommands().eval(PUSH_SCRIPT, ReturnType.INTEGER, 1, key, member, member, limit);
+                } else {
+                    connection.zSetCommands().zRem(key, member);
+                }
+            }
+            return null;
+        });
+    }
+
+    private boolean isPulledAuthor(Integer followersCount) {
+        return followersCount != null && followersCount >= fanOutFollowerLimit;
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
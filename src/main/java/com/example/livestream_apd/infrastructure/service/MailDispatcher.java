@@ -0,0 +1,222 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends mail on dedicated worker threads instead of the common fork-join pool, so a slow
+ * SMTP server only ever ties up these workers. Messages wait in a bounded queue; each
+ * worker takes up to {@code batch-size} of them and sends them over one SMTP connection.
+ * A message that fails is retried with exponential backoff up to {@code max-attempts}
+ * times. The returned future completes with whether the message was finally sent.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MailDispatcher {
+
+    private record MailJob(MimeMessage message, String recipient, CompletableFuture<Boolean> result,
+                           long enqueuedAt, int attempt) {
+
+        MailJob nextAttempt() {
+            return new MailJob(message, recipient, result, enqueuedAt, attempt + 1);
+        }
+    }
+
+    private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.mail.workers:2}")
+    private int workers;
+
+    @Value("${app.mail.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.mail.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.mail.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.mail.retry-delay:2000}")
+    private long retryDelay;
+
+    private BlockingQueue<MailJob> queue;
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+    private Timer latencyTimer;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        latencyTimer = Timer.builder("mail.send.latency")
+                .description("Time from queueing a mail to its final outcome")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("mail.send.failed")
+                .description("Mails that failed after every retry")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("mail.queue.rejected")
+                .description("Mails rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.depth", queue, BlockingQueue::size)
+                .description("Mails waiting for a worker")
+                .register(meterRegistry);
+
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a message for sending.
+     *
+     * @return completes with true once sent, or false if the queue is full or every
+     *         attempt failed
+     */
+    public CompletableFuture<Boolean> dispatch(MimeMessage message, String recipient) {
+        MailJob job = new MailJob(message, recipient, new CompletableFuture<>(), System.nanoTime(), 1);
+        if (!queue.offer(job)) {
+            rejectedCounter.increment();
+            log.warn("Mail queue is full, not sending mail to {}", recipient);
+            job.result().complete(false);
+        }
+        return job.result();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Pending retries are queued right away so the workers still send them once
+        for (Runnable retry : retryScheduler.shutdownNow()) {
+            retry.run();
+        }
+        running = false;
+        workerPool.shutdown();
+        try {
+            if (!workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Mail workers did not finish before shutdown, {} mails unsent", queue.size());
+                workerPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        List<MailJob> batch = new ArrayList<>(batchSize);
+        // Keeps draining after shutdown starts until the queue is empty
+        while (running || !queue.isEmpty()) {
+            try {
+                MailJob first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error in mail worker", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<MailJob> batch) {
+        Map<Object, Exception> failures;
+        try {
+            // One connection for the whole batch
+            mailSender.send(batch.stream().map(MailJob::message).toArray(MimeMessage[]::new));
+            failures = Map.of();
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                failAll(batch, e);
+                return;
+            }
+        } catch (MailException e) {
+            failAll(batch, e);
+            return;
+        }
+
+        for (MailJob job : batch) {
+            Exception failure = failures.get(job.message());
+            if (failure == null) {
+                complete(job, true);
+                log.info("Gửi thành công đến {}", job.recipient());
+            } else {
+                retryOrFail(job, failure);
+            }
+        }
+    }
+
+    private void failAll(List<MailJob> batch, Exception e) {
+        for (MailJob job : batch) {
+            retryOrFail(job, e);
+        }
+    }
+
+    private void retryOrFail(MailJob job, Exception e) {
+        if (job.attempt() >= maxAttempts || retryScheduler.isShutdown()) {
+            failedCounter.increment();
+            log.error("Lỗi gửi email {} sau {} lần thử", job.recipient(), job.attempt(), e);
+            complete(job, false);
+            return;
+        }
+
+        long delay = retryDelay << (job.attempt() - 1);
+        log.warn("Lỗi gửi email {}, thử lại sau {} ms: {}", job.recipient(), delay, e.getMessage());
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(job.nextAttempt())) {
+                rejectedCounter.increment();
+                complete(job, false);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void complete(MailJob job, boolean sent) {
+        latencyTimer.record(System.nanoTime() - job.enqueuedAt(), TimeUnit.NANOSECONDS);
+        job.result().complete(sent);
+    }
+}
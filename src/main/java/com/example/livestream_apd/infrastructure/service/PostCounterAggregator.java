@@ -0,0 +1,163 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.Post;
+import com.example.livestream_apd.domain.repository.PostRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates like and share count changes in memory and writes them as one atomic
+ * {@code like_count = like_count + delta} UPDATE per post and flush interval. A burst
+ * of likes on a hot post only touches striped {@link LongAdder}s, instead of every like
+ * reading, incrementing and saving the post row.
+ *
+ * <p>Deltas count immediately, so the liking request already sees its own like, and are
+ * reverted if the surrounding transaction rolls back. A flush subtracts what it wrote
+ * only once its transaction has committed, so a failed flush is retried by the next one
+ * and live counts never miss an in-flight delta. The count columns are not updatable
+ * through the entity, so saving a post can never overwrite a flushed value.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PostCounterAggregator {
+
+    private static final class PendingCounts {
+        private final LongAdder likes = new LongAdder();
+        private final LongAdder shares = new LongAdder();
+    }
+
+    private record Flush(PendingCounts counts, long likes, long shares) {
+    }
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, PendingCounts> pending = new ConcurrentHashMap<>();
+    // Entries removed while idle; flushed once more in case a writer still held a reference
+    private Map<Long, PendingCounts> retired = Map.of();
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("posts.counters.pending", pending, Map::size)
+                .description("Posts with like or share count changes not yet written")
+                .register(meterRegistry);
+    }
+
+    public void addLikes(Long postId, int delta) {
+        add(postId, delta, 0);
+    }
+
+    public void addShares(Long postId, int delta) {
+        add(postId, 0, delta);
+    }
+
+    /**
+     * Persisted like count plus changes not yet flushed.
+     */
+    public int likeCount(Post post) {
+        PendingCounts counts = pending.get(post.getId());
+        return Math.max(0, post.getLikeCount() + (counts != null ? (int) counts.likes.sum() : 0));
+    }
+
+    public int shareCount(Post post) {
+        PendingCounts counts = pending.get(post.getId());
+        return Math.max(0, post.getShareCount() + (counts != null ? (int) counts.shares.sum() : 0));
+    }
+
+    @Scheduled(fixedDelayString = "${app.post.counters.flush-interval:1000}")
+    public synchronized void flush() {
+        Map<Long, PendingCounts> stragglers = retired;
+        retired = new ConcurrentHashMap<>();
+
+        // Ascending post id order, so concurrent flushes from several nodes lock rows in the same order
+        Map<Long, List<Flush>> batch = new TreeMap<>();
+        collect(stragglers, batch);
+        collect(pending, batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach((postId, flushes) -> {
+                long likes = 0;
+                long shares = 0;
+                for (Flush flush : flushes) {
+                    likes += flush.likes();
+                    shares += flush.shares();
+                }
+                postRepository.addCounts(postId, (int) likes, (int) shares);
+            }));
+        } catch (Exception e) {
+            log.error("Error flushing post counters for {} posts, retrying next interval", batch.size(), e);
+            retired.putAll(stragglers);
+            return;
+        }
+
+        for (List<Flush> flushes : batch.values()) {
+            for (Flush flush : flushes) {
+                flush.counts().likes.add(-flush.likes());
+                flush.counts().shares.add(-flush.shares());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void collect(Map<Long, PendingCounts> source, Map<Long, List<Flush>> batch) {
+        for (Map.Entry<Long, PendingCounts> entry : source.entrySet()) {
+            PendingCounts counts = entry.getValue();
+            long likes = counts.likes.sum();
+            long shares = counts.shares.sum();
+            if (likes != 0 || shares != 0) {
+                batch.computeIfAbsent(entry.getKey(), id -> new ArrayList<>()).add(new Flush(counts, likes, shares));
+            } else if (source == pending && pending.remove(entry.getKey(), counts)) {
+                retired.put(entry.getKey(), counts);
+            }
+        }
+    }
+
+    private void add(Long postId, int likes, int shares) {
+        apply(postId, likes, shares);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        apply(postId, -likes, -shares);
+                    }
+                }
+            });
+        }
+    }
+
+    private void apply(Long postId, int likes, int shares) {
+        PendingCounts counts = pending.computeIfAbsent(postId, id -> new PendingCounts());
+        if (likes != 0) {
+            counts.likes.add(likes);
+        }
+        if (shares != 0) {
+            counts.shares.add(shares);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.repository.PostRepository;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incrementally maintained trending ranking. Every like, unlike, comment and share adds
+ * its weight to the post's score, decayed exponentially with {@code half-life}, so a
+ * post trends while it keeps collecting engagement and fades once it stops.
+ *
+ * <p>Scores use forward decay: an event is stored as {@code weight * 2^((t - epoch) / halfLife)}.
+ * Newer events weigh more, but every score decays at the same rate, so the order never
+ * needs recomputing as time passes; the epoch is only moved forward now and then to keep
+ * the numbers small. A scheduled refresh publishes the top {@code top-k} post ids as an
+ * immutable snapshot, which is all a trending request reads.</p>
+ *
+ * <p>The ranking is seeded once from the stored counters of recent public posts, as if
+ * their engagement happened when they were posted. Each node ranks from the events it
+ * handles itself on top of that seed.</p>
+ *
+ * <p>Events are applied once the surrounding transaction commits, so a rolled back like
+ * or share never counts. An unlike takes back exactly what its like added: the like's own
+ * weight at the time it was made, or at the post time if it predates this node's start
+ * and so was only counted by the seed.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingPostRanker {
+
+    public enum Engagement {
+        LIKE(3), COMMENT(2), SHARE(1);
+
+        private final double weight;
+
+        Engagement(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    // Scores below this after decay (a single share about six half-lives ago) are forgotten
+    private static final double MIN_SCORE = 0.02;
+
+    private final PostRepository postRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, Double> scores = new ConcurrentHashMap<>();
+    // Events take the read lock and may run together; moving the epoch takes the write lock
+    private final ReadWriteLock epochLock = new ReentrantReadWriteLock();
+    private long epoch = System.currentTimeMillis();
+    // Likes made before this were only counted by the seed, at their post's time
+    private final long startedAt = epoch;
+    private volatile List<Long> ranking = List.of();
+    private volatile boolean seeded;
+
+    @Value("${app.trending.half-life:21600000}")
+    private long halfLife;
+
+    @Value("${app.trending.top-k:500}")
+    private int topK;
+
+    @Value("${app.trending.max-tracked:20000}")
+    private int maxTracked;
+
+    @Value("${app.trending.seed-window:604800000}")
+    private long seedWindow;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("posts.trending.tracked", scores, Map::size)
+                .description("Posts with a live trending score")
+                .register(meterRegistry);
+    }
+
+    public void record(Long postId, Engagement engagement) {
+        TransactionCallbacks.afterCommit(() -> apply(postId, engagement.weight, System.currentTimeMillis()));
+    }
+
+    /**
+     * Takes back a like that was removed.
+     *
+     * @param likedAt when the like was made
+     * @param postedAt when the post was made
+     */
+    public void recordUnlike(Long postId, LocalDateTime likedAt, LocalDateTime postedAt) {
+        long likedAtMillis = likedAt != null ? toMillis(likedAt) : startedAt;
+        long countedAt = likedAtMillis < startedAt && postedAt != null ? toMillis(postedAt) : likedAtMillis;
+        TransactionCallbacks.afterCommit(() -> apply(postId, -Engagement.LIKE.weight, Math.min(countedAt, System.currentTimeMillis())));
+    }
+
+    /**
+     * Drops a post that was deleted or made private; it is gone from the ranking at the
+     * next refresh.
+     */
+    public void remove(Long postId) {
+        TransactionCallbacks.afterCommit(() -> scores.remove(postId));
+    }
+
+    /**
+     * Post ids of the current top K, highest score first. Empty until the first refresh.
+     */
+    public List<Long> ranking() {
+        return ranking;
+    }
+
+    @Scheduled(fixedDelayString = "${app.trending.refresh-interval:5000}")
+    public void refresh() {
+        try {
+            if (!seeded) {
+                seed();
+                seeded = true;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - epoch > halfLife) {
+                rebase(now);
+            }
+
+            List<Map.Entry<Long, Double>> entries = new ArrayList<>(scores.entrySet());
+            entries.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+            for (int i = maxTracked; i < entries.size(); i++) {
+                scores.remove(entries.get(i).getKey());
+            }
+
+            int count = Math.min(topK, entries.size());
+            List<Long> top = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                top.add(entries.get(i).getKey());
+            }
+            ranking = List.copyOf(top);
+        } catch (Exception e) {
+            log.error("Error refreshing trending posts", e);
+        }
+    }
+
+    private void seed() {
+        LocalDateTime since = LocalDateTime.now(ZoneOffset.UTC).minus(Duration.ofMillis(seedWindow));
+        List<Object[]> rows = postRepository.findTrendingSeed(since, PageRequest.of(0, maxTracked));
+        epochLock.readLock().lock();
+        try {
+            for (Object[] row : rows) {
+                Long postId = (Long) row[0];
+                double weight = ((Number) row[1]).doubleValue();
+                long postedAt = toMillis((LocalDateTime) row[2]);
+                add(postId, weight * growth(postedAt));
+            }
+        } finally {
+            epochLock.readLock().unlock();
+        }
+        log.info("Seeded trending posts with {} recent posts", rows.size());
+    }
+
+    private void rebase(long now) {
+        epochLock.writeLock().lock();
+        try {
+            double factor = 1 / growth(now);
+            scores.replaceAll((postId, score) -> score * factor);
+            scores.values().removeIf(score -> score < MIN_SCORE);
+            epoch = now;
+        } finally {
+            epochLock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Long postId, double weight, long timestamp) {
+        epochLock.readLock().lock();
+        try {
+            add(postId, weight * growth(timestamp));
+        } finally {
+            epochLock.readLock().unlock();
+        }
+    }
+
+    private void add(Long postId, double delta) {
+        // An unlike can take a score to zero; the post then stops being tracked
+        scores.compute(postId, (id, score) -> {
+            double updated = (score != null ? score : 0) + delta;
+            return updated > 0 ? updated : null;
+        });
+    }
+
+    private double growth(long timestamp) {
+        return Math.pow(2, (double) (timestamp - epoch) / halfLife);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
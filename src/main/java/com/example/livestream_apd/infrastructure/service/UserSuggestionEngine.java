@@ -0,0 +1,190 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.domain.entity.UserSuggestion;
+import com.example.livestream_apd.domain.repository.UserRepository;
+import com.example.livestream_apd.domain.repository.UserSuggestionRepository;
+import com.example.livestream_apd.utils.TimeUtil;
+import com.example.livestream_apd.utils.TransactionCallbacks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputes "people you may know" lists. Candidates are second-degree follows (people
+ * followed by the people a user follows), scored by the number of mutual follows plus a
+ * damped popularity term; lists shorter than {@code size} are topped up with the most
+ * followed active users. Each list is stored in {@code user_suggestions}, so serving it
+ * is one indexed lookup.
+ *
+ * <p>Only users whose follow graph changed are recomputed: a follow, unfollow or block
+ * marks the acting users, and their followers, whose second degree changed with them.
+ * Users without a list, or with one older than {@code max-age}, are marked when they
+ * ask for it. Marks are kept in memory on the node that saw the change.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSuggestionEngine {
+
+    private record Candidate(Long userId, int mutualCount, double score) {
+    }
+
+    private final UserSuggestionRepository suggestionRepository;
+    private final UserRepository userRepository;
+    private final FollowGraph followGraph;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    // Users whose followers must be marked too; expanded by the refresh job rather than on the request path
+    private final Set<Long> dirtyNeighbourhoods = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.suggestions.size:30}")
+    private int size;
+
+    @Value("${app.suggestions.candidate-limit:200}")
+    private int candidateLimit;
+
+    @Value("${app.suggestions.popularity-weight:0.5}")
+    private double popularityWeight;
+
+    @Value("${app.suggestions.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.suggestions.max-dirty-followers:1000}")
+    private int maxDirtyFollowers;
+
+    @Value("${app.suggestions.max-age:86400000}")
+    private long maxAge;
+
+    /**
+     * Stored suggestions for a user, best first. Marks the user for recomputation when
+     * the list is missing or old; an old list is still returned meanwhile.
+     */
+    public List<UserSuggestion> suggestionsFor(Long userId) {
+        List<UserSuggestion> suggestions = suggestionRepository.findByUserIdWithSuggestedUser(userId);
+        LocalDateTime staleBefore = TimeUtil.nowUtc().minus(Duration.ofMillis(maxAge));
+        if (suggestions.isEmpty() || suggestions.get(0).getComputedAt().isBefore(staleBefore)) {
+            dirtyUsers.add(userId);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Records that {@code userId} followed, unfollowed or blocked someone.
+     */
+    public void onFollowGraphChanged(Long userId) {
+        TransactionCallbacks.afterCommit(() -> dirtyNeighbourhoods.add(userId));
+    }
+
+    @Scheduled(initialDelayString = "${app.suggestions.refresh-interval:60000}",
+            fixedDelayString = "${app.suggestions.refresh-interval:60000}")
+    public void refreshDirty() {
+        try {
+            expandNeighbourhoods();
+            List<Long> batch = drain(dirtyUsers, batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            List<Object[]> popular = userRepository.findMostFollowedActiveUsers(PageRequest.of(0, size * 2));
+            int failed = 0;
+            for (Long userId : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> recompute(userId, popular));
+                } catch (Exception e) {
+                    failed++;
+                    dirtyUsers.add(userId);
+                    log.error("Error recomputing suggestions for user {}: {}", userId, e.getMessage());
+                }
+            }
+            log.info("Recomputed suggestions for {} users in {} ms ({} failed, {} still pending)",
+                    batch.size() - failed, System.currentTimeMillis() - start, failed, dirtyUsers.size());
+        } catch (Exception e) {
+            log.error("Error refreshing user suggestions", e);
+        }
+    }
+
+    private void expandNeighbourhoods() {
+        for (Long userId : drain(dirtyNeighbourhoods, Integer.MAX_VALUE)) {
+            dirtyUsers.add(userId);
+            // Beyond the cap, followers pick the change up when their list reaches max-age
+            dirtyUsers.addAll(userRepository.findFollowerIdsAfter(userId, 0L, PageRequest.of(0, maxDirtyFollowers)));
+        }
+    }
+
+    private void recompute(Long userId, List<Object[]> popular) {
+        List<Candidate> candidates = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Object[] row : suggestionRepository.findSecondDegreeCandidates(userId, candidateLimit)) {
+            Long candidateId = ((Number) row[0]).longValue();
+            int mutualCount = ((Number) row[1]).intValue();
+            int followers = row[2] != null ? ((Number) row[2]).intValue() : 0;
+            candidates.add(new Candidate(candidateId, mutualCount, score(mutualCount, followers)));
+            seen.add(candidateId);
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+        if (candidates.size() > size) {
+            candidates = new ArrayList<>(candidates.subList(0, size));
+        }
+
+        if (candidates.size() < size && !popular.isEmpty()) {
+            List<Long> popularIds = popular.stream().map(row -> (Long) row[0]).toList();
+            FollowGraph.Relationships relationships = followGraph.relationships(userId, popularIds);
+            Set<Long> blocked = new HashSet<>(userRepository.findBlockRelatedIds(userId));
+            for (int i = 0; i < popular.size() && candidates.size() < size; i++) {
+                Long candidateId = popularIds.get(i);
+                if (candidateId.equals(userId) || relationships.isFollowing(i)
+                        || blocked.contains(candidateId) || !seen.add(candidateId)) {
+                    continue;
+                }
+                int followers = popular.get(i)[1] != null ? ((Number) popular.get(i)[1]).intValue() : 0;
+                candidates.add(new Candidate(candidateId, 0, score(0, followers)));
+            }
+        }
+
+        LocalDateTime now = TimeUtil.nowUtc();
+        List<UserSuggestion> suggestions = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            suggestions.add(UserSuggestion.builder()
+                    .userId(userId)
+                    .suggestedUser(userRepository.getReferenceById(candidate.userId()))
+                    .position(i)
+                    .mutualCount(candidate.mutualCount())
+                    .score(candidate.score())
+                    .computedAt(now)
+                    .build());
+        }
+        suggestionRepository.deleteByUserId(userId);
+        suggestionRepository.saveAll(suggestions);
+    }
+
+    private double score(int mutualCount, int followers) {
+        return mutualCount + popularityWeight * Math.log10(1 + followers);
+    }
+
+    private static List<Long> drain(Set<Long> source, int limit) {
+        List<Long> drained = new ArrayList<>();
+        Iterator<Long> iterator = source.iterator();
+        while (iterator.hasNext() && drained.size() < limit) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.livestream_apd.infrastructure.websocket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Relays chat room frames between application nodes over Redis pub/sub.
+ * Each frame is published once to the room channel; every node that currently has
+ * local members in the room is subscribed and fans the frame out to them.
+ * Frames published by this node are ignored on receipt because they were already
+ * delivered locally.
+ *
+ * <p>Typing start/stop events travel on the room channel as well, flagged so they
+ * reach the receiving node's typing coalescer rather than its clients. Each node then
+ * emits snapshots of the whole room's typists instead of only its own.</p>
+ *
+ * <p>A single node-wide channel also carries history cache events, which every node
+ * receives whether or not it has members in the room.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.websocket.chat.cluster", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ChatClusterRelay {
+
+    private static final String CHANNEL_PREFIX = "chat:room:";
+    private static final String HISTORY_CHANNEL = "chat:history";
+    private static final char SEPARATOR = '\n';
+    // Takes the place of the priority flag for typing events
+    private static final char TYPING_FLAG = 'T';
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, MessageListener> roomListeners = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface RoomDelivery {
+        void deliver(String roomId, String excludeSessionId, boolean lowPriority, String payload);
+    }
+
+    @FunctionalInterface
+    public interface TypingDelivery {
+        void typing(String roomId, Long userId, boolean typing);
+    }
+
+    public void publish(String roomId, String excludeSessionId, boolean lowPriority, String payload) {
+        // Wire format: origin \n priority \n excluded session \n JSON payload
+        String envelope = nodeId + SEPARATOR
+                + (lowPriority ? '1' : '0') + SEPARATOR
+                + (excludeSessionId != null ? excludeSessionId : "") + SEPARATOR
+                + payload;
+        try {
+            redisTemplate.convertAndSend(CHANNEL_PREFIX + roomId, envelope);
+        } catch (Exception e) {
+            log.error("Error publishing chat frame for room {} to cluster", roomId, e);
+        }
+    }
+
+    public void publishTyping(String roomId, Long userId, boolean typing) {
+        // Wire format: origin \n T \n \n userId:1|0
+        String envelope = nodeId + SEPARATOR + TYPING_FLAG + SEPARATOR + SEPARATOR + userId + ':' + (typing ? '1' : '0');
+        try {
+            redisTemplate.convertAndSend(CHANNEL_PREFIX + roomId, envelope);
+        } catch (Exception e) {
+            log.error("Error publishing typing event for room {} to cluster", roomId, e);
+        }
+    }
+
+    public void publishHistoryEvent(String payload) {
+        try {
+            redisTemplate.convertAndSend(HISTORY_CHANNEL, nodeId + SEPARATOR + payload);
+        } catch (Exception e) {
+            log.error("Error publishing chat history event to cluster", e);
+        }
+    }
+
+    /**
+     * Registers the handler for history events published by other nodes.
+     */
+    public void subscribeHistoryEvents(Consumer<String> handler) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String envelope = new String(message.getBody(), StandardCharsets.UTF_8);
+            int originEnd = envelope.indexOf(SEPARATOR);
+            if (originEnd < 0) {
+                log.warn("Dropping malformed cluster chat history event");
+                return;
+            }
+            if (originEnd == nodeId.length() && envelope.startsWith(nodeId)) {
+                return;
+            }
+            handler.accept(envelope.substring(originEnd + 1));
+        }, new ChannelTopic(HISTORY_CHANNEL));
+    }
+
+    public void subscribe(String roomId, RoomDelivery delivery, TypingDelivery typingDelivery) {
+        roomListeners.computeIfAbsent(roomId, id -> {
+            MessageListener listener = (message, pattern) -> receive(id, message.getBody(), delivery, typingDelivery);
+            listenerContainer.addMessageListener(listener, new ChannelTopic(CHANNEL_PREFIX + id));
+            log.debug("Node {} subscribed to chat room {}", nodeId, id);
+            return listener;
+        });
+    }
+
+    public void unsubscribe(String roomId) {
+        MessageListener listener = roomListeners.remove(roomId);
+        if (listener != null) {
+            listenerContainer.removeMessageListener(listener, new ChannelTopic(CHANNEL_PREFIX + roomId));
+            log.debug("Node {} unsubscribed from chat room {}", nodeId, roomId);
+        }
+    }
+
+    private void receive(String roomId, byte[] body, RoomDelivery delivery, TypingDelivery typingDelivery) {
+        String envelope = new String(body, StandardCharsets.UTF_8);
+        int originEnd = envelope.indexOf(SEPARATOR);
+        int priorityEnd = originEnd + 2;
+        int excludeEnd = envelope.indexOf(SEPARATOR, priorityEnd + 1);
+        if (originEnd < 0 || excludeEnd < 0 || envelope.charAt(priorityEnd) != SEPARATOR) {
+            log.warn("Dropping malformed cluster chat frame for room {}", roomId);
+            return;
+        }
+
+        if (originEnd == nodeId.length() && envelope.startsWith(nodeId)) {
+            return;
+        }
+
+        if (envelope.charAt(originEnd + 1) == TYPING_FLAG) {
+            String event = envelope.substring(excludeEnd + 1);
+            int colon = event.indexOf(':');
+            try {
+                typingDelivery.typing(roomId, Long.valueOf(event.substring(0, colon)), event.endsWith("1"));
+            } catch (RuntimeException e) {
+                log.warn("Dropping malformed cluster typing event for room {}", roomId);
+            }
+            return;
+        }
+
+        boolean lowPriority = envelope.charAt(originEnd + 1) == '1';
+        String excludeSessionId = excludeEnd > priorityEnd + 1 ? envelope.substring(priorityEnd + 1, excludeEnd) : null;
+        delivery.deliver(roomId, excludeSessionId, lowPriority, envelope.substring(excludeEnd + 1));
+    }
+}
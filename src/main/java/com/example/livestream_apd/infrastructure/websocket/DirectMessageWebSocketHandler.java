@@ -3,10 +3,15 @@ package com.example.livestream_apd.infrastructure.websocket;
 import com.example.livestream_apd.application.dto.request.SendDirectMessageRequest;
 import com.example.livestream_apd.application.dto.response.DirectMessageResponse;
 import com.example.livestream_apd.domain.service.DirectMessageService;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -32,6 +37,30 @@ public class DirectMessageWebSocketHandler extends TextWebSocketHandler {
     // Store user sessions: userId -> Map<conversationId, session>
     private final Map<Long, Map<Long, WebSocketSession>> userSessions = new ConcurrentHashMap<>();
 
+    @Value("${app.websocket.typing.expiry:6000}")
+    private long typingExpiry;
+
+    @Value("${app.websocket.typing.max-listed:5}")
+    private int maxListedTypists;
+
+    @Value("${app.websocket.read-receipts.max-attempts:5}")
+    private int readReceiptMaxAttempts;
+
+    private TypingCoalescer<Long> typingCoalescer;
+    private ReadReceiptCoalescer readReceipts;
+
+    @PostConstruct
+    public void init() {
+        typingCoalescer = new TypingCoalescer<>(typingExpiry, maxListedTypists);
+        readReceipts = new ReadReceiptCoalescer(readReceiptMaxAttempts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Receipts still pending from the last window would otherwise be lost
+        flushReadReceipts();
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         log.info("Direct message WebSocket connection established: {}", session.getId());
@@ -131,37 +160,53 @@ public class DirectMessageWebSocketHandler extends TextWebSocketHandler {
     }
 
     private void handleTypingStart(Long userId, Long conversationId) {
-        broadcastToConversation(conversationId, Map.of(
-            "type", "TYPING_START",
-            "data", Map.of("userId", userId)
-        ), userId);
+        typingCoalescer.typingStarted(conversationId, userId);
     }
 
     private void handleTypingStop(Long userId, Long conversationId) {
-        broadcastToConversation(conversationId, Map.of(
-            "type", "TYPING_STOP",
-            "data", Map.of("userId", userId)
-        ), userId);
+        typingCoalescer.typingStopped(conversationId, userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.typing.flush-interval:500}")
+    public void flushTypingIndicators() {
+        typingCoalescer.flush((conversationId, typingUserIds, totalTyping) ->
+            broadcastToConversation(conversationId, Map.of(
+                "type", "TYPING_USERS",
+                "data", Map.of(
+                    "userIds", typingUserIds,
+                    "count", totalTyping
+                )
+            ), null));
     }
 
     private void handleMarkAsRead(Long userId, Long conversationId, JsonNode messageNode) {
         try {
             Long messageId = messageNode.get("data").get("messageId").asLong();
-            var response = messageService.markMessageAsRead(messageId, userId);
-            
-            if (response.getSuccess()) {
+            readReceipts.messageRead(conversationId, userId, messageId);
+        } catch (Exception e) {
+            log.error("Error marking message as read: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.read-receipts.flush-interval:1000}")
+    public void flushReadReceipts() {
+        readReceipts.flush((conversationId, readerId, upToMessageId) -> {
+            var response = messageService.markMessagesAsReadUpTo(conversationId, readerId, upToMessageId);
+            if (!response.getSuccess()) {
+                return false;
+            }
+            if (response.getData() > 0) {
                 broadcastToConversation(conversationId, Map.of(
-                    "type", "MESSAGE_READ",
+                    "type", "READ_UP_TO",
                     "data", Map.of(
-                        "messageId", messageId,
-                        "readBy", userId
+                        "messageId", upToMessageId,
+                        "readBy", readerId,
+                        "count", response.getData()
                     )
                 ), null); // Send to all participants including sender
             }
-            
-        } catch (Exception e) {
-            log.error("Error marking message as read: {}", e.getMessage(), e);
-        }
+            return true;
+        });
     }
 
     private void handlePing(WebSocketSession session) {
@@ -183,6 +228,8 @@ public class DirectMessageWebSocketHandler extends TextWebSocketHandler {
         Long conversationId = getConversationIdFromSession(session);
         
         if (userId != null && conversationId != null) {
+            typingCoalescer.typingStopped(conversationId, userId);
+
             // Remove from conversation sessions
             Map<Long, WebSocketSession> convSessions = conversationSessions.get(conversationId);
             if (convSessions != null) {
@@ -207,20 +254,43 @@ public class DirectMessageWebSocketHandler extends TextWebSocketHandler {
 
     private void broadcastToConversation(Long conversationId, Map<String, Object> message, Long excludeUserId) {
         Map<Long, WebSocketSession> sessions = conversationSessions.get(conversationId);
-        if (sessions != null) {
-            sessions.forEach((userId, session) -> {
-                if (excludeUserId == null || !userId.equals(excludeUserId)) {
-                    sendMessage(session, message);
-                }
-            });
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+
+        // Encode once and share the same frame with every participant
+        TextMessage frame = toTextMessage(message);
+        if (frame == null) {
+            return;
         }
+
+        sessions.forEach((userId, session) -> {
+            if (excludeUserId == null || !userId.equals(excludeUserId)) {
+                sendFrame(session, frame);
+            }
+        });
     }
 
     private void sendMessage(WebSocketSession session, Map<String, Object> message) {
+        TextMessage frame = toTextMessage(message);
+        if (frame != null) {
+            sendFrame(session, frame);
+        }
+    }
+
+    private TextMessage toTextMessage(Map<String, Object> message) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing message of type {}: {}", message.get("type"), e.getMessage());
+            return null;
+        }
+    }
+
+    private void sendFrame(WebSocketSession session, TextMessage frame) {
         try {
             if (session.isOpen()) {
-                String messageJson = objectMapper.writeValueAsString(message);
-                session.sendMessage(new TextMessage(messageJson));
+                session.sendMessage(frame);
             }
         } catch (IOException e) {
             log.error("Error sending message to session {}: {}", session.getId(), e.getMessage());
@@ -0,0 +1,75 @@
+package com.example.livestream_apd.infrastructure.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses read receipts into a high-water mark per (conversation, reader). Marking
+ * message 41, 42 and 45 read inside one flush window leaves a single pending "read up
+ * to 45", which {@link #flush} hands over once, so a client scrolling through history
+ * costs one write and one broadcast per window instead of one per message.
+ *
+ * <p>A mark whose handler fails is merged back and retried on the next flush, up to
+ * {@code maxAttempts} flushes in a row, so a short database outage loses no receipts.</p>
+ */
+@Slf4j
+public class ReadReceiptCoalescer {
+
+    @FunctionalInterface
+    public interface ReadUpToHandler {
+        /**
+         * @return false if the mark could not be applied and should be retried
+         */
+        boolean readUpTo(Long conversationId, Long readerId, Long upToMessageId);
+    }
+
+    private record ReaderKey(Long conversationId, Long readerId) {
+    }
+
+    private final Map<ReaderKey, Long> highWaterMarks = new ConcurrentHashMap<>();
+    private final Map<ReaderKey, Integer> failedAttempts = new ConcurrentHashMap<>();
+    private final int maxAttempts;
+
+    public ReadReceiptCoalescer(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void messageRead(Long conversationId, Long readerId, Long messageId) {
+        highWaterMarks.merge(new ReaderKey(conversationId, readerId), messageId, Math::max);
+    }
+
+    /**
+     * Hands every pending high-water mark to the handler and clears it. Receipts that
+     * arrive while flushing start a new mark and are picked up by the next flush.
+     */
+    public void flush(ReadUpToHandler handler) {
+        for (ReaderKey key : highWaterMarks.keySet()) {
+            Long upToMessageId = highWaterMarks.remove(key);
+            if (upToMessageId == null) {
+                continue;
+            }
+
+            boolean applied;
+            try {
+                applied = handler.readUpTo(key.conversationId(), key.readerId(), upToMessageId);
+            } catch (RuntimeException e) {
+                log.warn("Error applying read receipt up to {} in conversation {}: {}",
+                        upToMessageId, key.conversationId(), e.getMessage());
+                applied = false;
+            }
+
+            if (applied) {
+                failedAttempts.remove(key);
+            } else if (failedAttempts.merge(key, 1, Integer::sum) < maxAttempts) {
+                // A newer receipt may have arrived meanwhile; keep whichever is higher
+                highWaterMarks.merge(key, upToMessageId, Math::max);
+            } else {
+                failedAttempts.remove(key);
+                log.error("Dropping read receipt up to {} in conversation {} for user {} after {} attempts",
+                        upToMessageId, key.conversationId(), key.readerId(), maxAttempts);
+            }
+        }
+    }
+}
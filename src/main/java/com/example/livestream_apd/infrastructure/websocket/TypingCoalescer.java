@@ -0,0 +1,83 @@
+package com.example.livestream_apd.infrastructure.websocket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merges typing start/stop events per room (or conversation) into periodic
+ * "who is typing" snapshots. Events only mark the room dirty; {@link #flush} emits
+ * a snapshot for a room when its typist set actually changed since the last
+ * emission, so repeated starts and start/stop flapping inside one interval
+ * produce no frames at all.
+ *
+ * @param <K> room or conversation key
+ */
+public class TypingCoalescer<K> {
+
+    @FunctionalInterface
+    public interface SnapshotEmitter<K> {
+        void emit(K key, List<Long> typingUserIds, int totalTyping);
+    }
+
+    private final long expiryMillis;
+    private final int maxListedTypists;
+    private final Map<K, RoomTyping> rooms = new ConcurrentHashMap<>();
+
+    public TypingCoalescer(long expiryMillis, int maxListedTypists) {
+        this.expiryMillis = expiryMillis;
+        this.maxListedTypists = maxListedTypists;
+    }
+
+    public void typingStarted(K key, Long userId) {
+        long now = System.currentTimeMillis();
+        rooms.compute(key, (k, room) -> {
+            RoomTyping updated = room != null ? room : new RoomTyping();
+            updated.typists.put(userId, now);
+            return updated;
+        });
+    }
+
+    public void typingStopped(K key, Long userId) {
+        RoomTyping room = rooms.get(key);
+        if (room != null) {
+            room.typists.remove(userId);
+        }
+    }
+
+    /**
+     * Emits a snapshot for every room whose typist set changed since the last flush,
+     * expiring typists that never sent a stop event. Rooms with nobody typing are
+     * dropped once their empty snapshot has been emitted.
+     */
+    public void flush(SnapshotEmitter<K> emitter) {
+        long expiredBefore = System.currentTimeMillis() - expiryMillis;
+
+        for (Map.Entry<K, RoomTyping> entry : rooms.entrySet()) {
+            RoomTyping room = entry.getValue();
+            room.typists.values().removeIf(startedAt -> startedAt < expiredBefore);
+
+            List<Long> current = new ArrayList<>(room.typists.keySet());
+            Collections.sort(current);
+
+            if (!current.equals(room.lastEmitted)) {
+                room.lastEmitted = current;
+                List<Long> listed = current.size() > maxListedTypists
+                        ? current.subList(0, maxListedTypists)
+                        : current;
+                emitter.emit(entry.getKey(), listed, current.size());
+            }
+
+            if (current.isEmpty()) {
+                rooms.computeIfPresent(entry.getKey(), (k, r) -> r.typists.isEmpty() ? null : r);
+            }
+        }
+    }
+
+    private static class RoomTyping {
+        private final Map<Long, Long> typists = new ConcurrentHashMap<>();
+        private List<Long> lastEmitted = List.of();
+    }
+}
@@ -111,14 +111,8 @@ public class AuthController {
 
 
     private String getClientIpAddress(HttpServletRequest httpServletRequest) {
-        String xForwarderFor = httpServletRequest.getHeader("X-Forwarded-For"); // header cua cac may
-        if(xForwarderFor != null && !xForwarderFor.isEmpty()){
-            return xForwarderFor.split(",")[0].trim();
-        }
-        String xRealIp = httpServletRequest.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
-        }
+        // X-Forwarded-For is resolved by the container only for trusted proxies
+        // (server.tomcat.remoteip.internal-proxies); reading it here would let any client pick its own IP
         return httpServletRequest.getRemoteAddr();
     }
 }
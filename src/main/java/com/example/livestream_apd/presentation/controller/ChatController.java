@@ -8,6 +8,7 @@ import com.example.livestream_apd.application.dto.request.TypingIndicatorRequest
 import com.example.livestream_apd.application.dto.response.ApiResponse;
 import com.example.livestream_apd.application.dto.response.ChatMessageResponse;
 import com.example.livestream_apd.application.dto.response.ChatRoomResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.PagedResponse;
 import com.example.livestream_apd.domain.entity.User;
 import com.example.livestream_apd.domain.repository.UserRepository;
@@ -112,6 +113,19 @@ public class ChatController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    @GetMapping("/rooms/{id}/messages/cursor")
+    @Operation(summary = "Lấy tin nhắn trong room theo cursor", description = "Phân trang theo cursor, không đếm tổng số tin nhắn")
+    public ResponseEntity<ApiResponse<CursorResponse<ChatMessageResponse>>> getMessagesInRoomByCursor(
+            @PathVariable Long id,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang mới nhất)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số phần tử mỗi trang")
+            @RequestParam(defaultValue = "50") int size) {
+
+        CursorResponse<ChatMessageResponse> response = chatMessageService.getMessagesInRoomByCursor(id, cursor, size);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
     @PostMapping("/rooms/{id}/messages")
     @Operation(summary = "Gửi tin nhắn", description = "Gửi tin nhắn mới vào phòng chat")
     @PreAuthorize("hasRole('USER')")
@@ -5,6 +5,7 @@ import com.example.livestream_apd.application.dto.request.SearchDirectMessageReq
 import com.example.livestream_apd.application.dto.request.SendDirectMessageRequest;
 import com.example.livestream_apd.application.dto.request.StartConversationRequest;
 import com.example.livestream_apd.application.dto.response.ApiResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.DirectConversationResponse;
 import com.example.livestream_apd.application.dto.response.DirectMessageResponse;
 import com.example.livestream_apd.application.dto.response.PagedResponse;
@@ -238,6 +239,22 @@ public class DirectMessageController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/conversations/{conversationId}/messages/cursor")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Lấy danh sách tin nhắn theo cursor")
+    public ResponseEntity<ApiResponse<CursorResponse<DirectMessageResponse>>> getMessagesByCursor(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long conversationId,
+            @Parameter(description = "Cursor từ trang trước") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Kích thước trang") @RequestParam(defaultValue = "20") int size) {
+        
+        Long currentUserId = Long.parseLong(userDetails.getUsername());
+        ApiResponse<CursorResponse<DirectMessageResponse>> response = 
+                messageService.getMessagesByCursor(conversationId, currentUserId, cursor, size);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/messages/{messageId}")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Lấy thông tin tin nhắn")
@@ -326,6 +343,23 @@ public class DirectMessageController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/conversations/{conversationId}/messages/search/cursor")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Tìm kiếm tin nhắn theo cursor")
+    public ResponseEntity<ApiResponse<CursorResponse<DirectMessageResponse>>> searchMessagesByCursor(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long conversationId,
+            @Parameter(description = "Từ khóa tìm kiếm") @RequestParam String query,
+            @Parameter(description = "Cursor từ trang trước") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Kích thước trang") @RequestParam(defaultValue = "20") int size) {
+        
+        Long currentUserId = Long.parseLong(userDetails.getUsername());
+        ApiResponse<CursorResponse<DirectMessageResponse>> response = 
+                messageService.searchMessagesByCursor(conversationId, currentUserId, query, cursor, size);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/conversations/{conversationId}/messages/media")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Lấy tin nhắn media trong cuộc trò chuyện")
@@ -351,6 +385,28 @@ public class DirectMessageController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/conversations/{conversationId}/messages/media/cursor")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(summary = "Lấy tin nhắn media theo cursor")
+    public ResponseEntity<ApiResponse<CursorResponse<DirectMessageResponse>>> getMediaMessagesByCursor(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long conversationId,
+            @Parameter(description = "Loại media") @RequestParam(defaultValue = "IMAGE,VIDEO,AUDIO,FILE") String types,
+            @Parameter(description = "Cursor từ trang trước") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Kích thước trang") @RequestParam(defaultValue = "20") int size) {
+        
+        Long currentUserId = Long.parseLong(userDetails.getUsername());
+        
+        List<DirectMessage.MessageType> mediaTypes = Arrays.stream(types.split(","))
+                .map(type -> DirectMessage.MessageType.valueOf(type.trim().toUpperCase()))
+                .toList();
+        
+        ApiResponse<CursorResponse<DirectMessageResponse>> response = 
+                messageService.getMediaMessagesByCursor(conversationId, currentUserId, mediaTypes, cursor, size);
+        
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/conversations/{conversationId}/messages/new")
     @PreAuthorize("hasRole('USER')")
     @Operation(summary = "Lấy tin nhắn mới sau thời gian nhất định")
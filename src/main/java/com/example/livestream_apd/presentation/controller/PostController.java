@@ -1,5 +1,7 @@
 package com.example.livestream_apd.presentation.controller;
 
+import com.example.livestream_apd.application.dto.response.CommentResponse;
+import com.example.livestream_apd.application.dto.response.CursorResponse;
 import com.example.livestream_apd.application.dto.response.PagedResponse;
 import com.example.livestream_apd.application.dto.response.PostResponse;
 import com.example.livestream_apd.application.dto.response.PostDetailResponse;
@@ -96,6 +98,21 @@ public class PostController {
         return ResponseEntity.ok(postDetail);
     }
 
+    @GetMapping("/{postId}/comments/{commentId}/replies")
+    @Operation(summary = "Lấy replies của comment", description = "Phân trang bằng cursor, cũ nhất trước")
+    public ResponseEntity<CursorResponse<CommentResponse>> getCommentReplies(
+            @CurrentUser User currentUser,
+            @PathVariable Long postId,
+            @PathVariable Long commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        CursorResponse<CommentResponse> replies = postService.getCommentReplies(currentUser, postId, commentId, cursor, size);
+        return ResponseEntity.ok(replies);
+    }
+
     @PostMapping("/{postId}/like")
     @Operation(summary = "Like post", description = "")
     @PreAuthorize("hasRole('USER')")
@@ -0,0 +1,34 @@
+package com.example.livestream_apd.presentation.controller;
+
+import com.example.livestream_apd.application.dto.response.ApiResponse;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/search")
+@RequiredArgsConstructor
+@Tag(name = "Search Admin", description = "Quản lý chỉ mục tìm kiếm tin nhắn")
+public class SearchAdminController {
+
+    private final MessageSearchIndex searchIndex;
+
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Xây dựng lại chỉ mục tìm kiếm", description = "Đánh chỉ mục lại toàn bộ tin nhắn từ cơ sở dữ liệu")
+    public ResponseEntity<ApiResponse<String>> rebuildIndex() {
+        if (!searchIndex.rebuildAsync()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("Chỉ mục đang được xây dựng lại hoặc đã bị tắt"));
+        }
+        return ResponseEntity.accepted()
+                .body(ApiResponse.success("Đang xây dựng lại chỉ mục tìm kiếm", "REBUILDING"));
+    }
+}
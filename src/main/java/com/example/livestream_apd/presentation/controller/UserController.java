@@ -3,6 +3,7 @@ package com.example.livestream_apd.presentation.controller;
 import com.example.livestream_apd.application.dto.response.ApiResponse;
 import com.example.livestream_apd.application.dto.response.FollowResponse;
 import com.example.livestream_apd.application.dto.response.UserResponse;
+import com.example.livestream_apd.application.dto.response.UserSuggestionResponse;
 import com.example.livestream_apd.application.dto.request.SearchUserRequest;
 import com.example.livestream_apd.application.dto.request.UpdateProfileRequest;
 import com.example.livestream_apd.domain.service.UserService;
@@ -19,6 +20,8 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
@@ -48,6 +51,16 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/suggestions")
+    @Operation (summary = "Gợi ý người có thể biết" , description = "Danh sách được tính trước từ quan hệ follow bậc hai")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<ApiResponse<List<UserSuggestionResponse>>> getUserSuggestions(
+            @AuthenticationPrincipal UserDetailsServiceImpl.UserPrincipal currentUser,
+            @RequestParam(defaultValue = "20") int limit){
+        ApiResponse<List<UserSuggestionResponse>> response = userService.getUserSuggestions(currentUser.getId(), limit);
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/{id}")
     @Operation (summary = "Thông tin user khác" , description = "")
     @PreAuthorize("hasRole('USER')")
@@ -0,0 +1,38 @@
+package com.example.livestream_apd.presentation.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * Outbound wrapper for a chat session. Frames are queued in a bounded buffer and
+ * written by whichever thread holds the session's send lock, so a slow client never
+ * interleaves frames and never blocks more than one broadcasting thread at a time.
+ * Exceeding the send-time or buffer-size limit terminates the session.
+ */
+public class BufferedChatSession extends ConcurrentWebSocketSessionDecorator {
+
+    private final int lowPriorityDropThreshold;
+
+    public BufferedChatSession(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit,
+                               int lowPriorityDropThreshold) {
+        super(delegate, sendTimeLimit, bufferSizeLimit, OverflowStrategy.TERMINATE);
+        this.lowPriorityDropThreshold = lowPriorityDropThreshold;
+    }
+
+    /**
+     * Sends a low-priority frame (typing, join/leave) unless the client is already
+     * backed up, in which case the frame is dropped.
+     *
+     * @return true if the frame was handed to the session, false if it was dropped
+     */
+    public boolean sendDroppable(WebSocketMessage<?> message) throws IOException {
+        if (getBufferSize() > lowPriorityDropThreshold) {
+            return false;
+        }
+        sendMessage(message);
+        return true;
+    }
+}
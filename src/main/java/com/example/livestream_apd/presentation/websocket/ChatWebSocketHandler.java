@@ -1,13 +1,25 @@
 package com.example.livestream_apd.presentation.websocket;
 
+import com.example.livestream_apd.infrastructure.websocket.ChatClusterRelay;
+import com.example.livestream_apd.infrastructure.websocket.TypingCoalescer;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
@@ -15,17 +27,71 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class ChatWebSocketHandler implements WebSocketHandler {
 
+    // Presence events that may be shed for clients whose outbound buffer is backing up
+    private static final Set<String> LOW_PRIORITY_TYPES = Set.of(
+        "typing_users", "user_joined", "user_left", "user_disconnected"
+    );
+
     private final ObjectMapper objectMapper;
-    private final Map<String, WebSocketSession> chatSessions = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ChatClusterRelay> clusterRelayProvider;
+    private final Map<String, BufferedChatSession> chatSessions = new ConcurrentHashMap<>();
     private final Map<String, String> sessionRoomMap = new ConcurrentHashMap<>();
     private final Map<String, Long> sessionUserMap = new ConcurrentHashMap<>();
+    // Room index: roomId -> sessions currently in that room, so fan-out only touches room members
+    private final Map<String, Set<BufferedChatSession>> roomSessions = new ConcurrentHashMap<>();
+
+    @Value("${app.websocket.chat.send-time-limit:10000}")
+    private int sendTimeLimit;
+
+    @Value("${app.websocket.chat.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${app.websocket.chat.low-priority-drop-threshold:65536}")
+    private int lowPriorityDropThreshold;
+
+    @Value("${app.websocket.typing.expiry:6000}")
+    private long typingExpiry;
+
+    @Value("${app.websocket.typing.max-listed:5}")
+    private int maxListedTypists;
+
+    private TypingCoalescer<String> typingCoalescer;
+
+    private Counter droppedFramesCounter;
+    private Counter slowConsumerCounter;
+    // Null when running single-node (app.websocket.chat.cluster.enabled=false)
+    private ChatClusterRelay clusterRelay;
+
+    @PostConstruct
+    public void init() {
+        clusterRelay = clusterRelayProvider.getIfAvailable();
+        typingCoalescer = new TypingCoalescer<>(typingExpiry, maxListedTypists);
+
+        Gauge.builder("chat.websocket.sessions", chatSessions, Map::size)
+            .description("Open chat WebSocket sessions on this node")
+            .register(meterRegistry);
+        // Aggregated over all sessions; a per-session tag would create one time series per connection
+        Gauge.builder("chat.websocket.buffer.bytes", chatSessions, ChatWebSocketHandler::totalBufferedBytes)
+            .description("Bytes queued for delivery across all chat sessions on this node")
+            .register(meterRegistry);
+        droppedFramesCounter = Counter.builder("chat.websocket.frames.dropped")
+            .description("Low-priority frames dropped for backed-up sessions")
+            .register(meterRegistry);
+        slowConsumerCounter = Counter.builder("chat.websocket.slow.consumers")
+            .description("Sessions terminated for exceeding the send-time or buffer-size limit")
+            .register(meterRegistry);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String roomId = getRoomIdFromSession(session);
         if (roomId != null) {
-            chatSessions.put(session.getId(), session);
+            BufferedChatSession outbound = new BufferedChatSession(
+                session, sendTimeLimit, bufferSizeLimit, lowPriorityDropThreshold);
+            chatSessions.put(session.getId(), outbound);
             sessionRoomMap.put(session.getId(), roomId);
+            addSessionToRoom(roomId, outbound);
             log.info("WebSocket connection established for chat room: {} session: {}", roomId, session.getId());
             
             // Send welcome message
@@ -113,15 +179,9 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     private void handleTypingIndicator(WebSocketSession session, Map<String, Object> payload, String roomId, boolean isTyping) {
         try {
             Long userId = sessionUserMap.get(session.getId());
-            if (userId != null) {
-                Map<String, Object> typingMessage = Map.of(
-                    "type", isTyping ? "user_typing" : "user_stopped_typing",
-                    "roomId", roomId,
-                    "userId", userId,
-                    "timestamp", System.currentTimeMillis()
-                );
-
-                broadcastToRoom(roomId, typingMessage, session.getId());
+            if (userId != null && roomId != null) {
+                // Coalesced into the next typing_users snapshot instead of broadcast per event
+                onTyping(roomId, userId, isTyping);
             }
         } catch (Exception e) {
             log.error("Error handling typing indicator", e);
@@ -133,8 +193,13 @@ public class ChatWebSocketHandler implements WebSocketHandler {
             String newRoomId = (String) payload.get("roomId");
             Long userId = ((Number) payload.get("userId")).longValue();
             
-            if (newRoomId != null) {
-                sessionRoomMap.put(session.getId(), newRoomId);
+            BufferedChatSession outbound = chatSessions.get(session.getId());
+            if (newRoomId != null && outbound != null) {
+                String previousRoomId = sessionRoomMap.put(session.getId(), newRoomId);
+                if (previousRoomId != null && !previousRoomId.equals(newRoomId)) {
+                    removeSessionFromRoom(previousRoomId, outbound);
+                }
+                addSessionToRoom(newRoomId, outbound);
                 sessionUserMap.put(session.getId(), userId);
                 
                 // Notify others in the room
@@ -160,10 +225,16 @@ public class ChatWebSocketHandler implements WebSocketHandler {
 
     private void handleLeaveRoom(WebSocketSession session) {
         try {
-            String roomId = sessionRoomMap.get(session.getId());
+            String roomId = sessionRoomMap.remove(session.getId());
             Long userId = sessionUserMap.get(session.getId());
-            
+
+            BufferedChatSession outbound = chatSessions.get(session.getId());
+            if (roomId != null && outbound != null) {
+                removeSessionFromRoom(roomId, outbound);
+            }
+
             if (roomId != null && userId != null) {
+                onTyping(roomId, userId, false);
                 Map<String, Object> leaveMessage = Map.of(
                     "type", "user_left",
                     "roomId", roomId,
@@ -178,30 +249,182 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
     }
 
+    private void onTyping(String roomId, Long userId, boolean isTyping) {
+        applyTyping(roomId, userId, isTyping);
+        if (clusterRelay != null) {
+            clusterRelay.publishTyping(roomId, userId, isTyping);
+        }
+    }
+
+    private void applyTyping(String roomId, Long userId, boolean isTyping) {
+        if (isTyping) {
+            typingCoalescer.typingStarted(roomId, userId);
+        } else {
+            typingCoalescer.typingStopped(roomId, userId);
+        }
+    }
+
+    /**
+     * Typing events are relayed to every node in the room and coalesced there, so each
+     * node holds the room's full typist set and delivers its snapshot to local members only.
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.typing.flush-interval:500}")
+    public void flushTypingIndicators() {
+        typingCoalescer.flush((roomId, typingUserIds, totalTyping) -> {
+            TextMessage frame = toTextMessage(Map.of(
+                "type", "typing_users",
+                "roomId", roomId,
+                "userIds", typingUserIds,
+                "count", totalTyping,
+                "timestamp", System.currentTimeMillis()
+            ));
+            if (frame != null) {
+                deliverToLocalMembers(roomId, frame, true, null);
+            }
+        });
+    }
+
     private void broadcastToRoom(String roomId, Map<String, Object> message, String excludeSessionId) {
-        chatSessions.entrySet().parallelStream()
-            .filter(entry -> !entry.getKey().equals(excludeSessionId))
-            .filter(entry -> roomId.equals(sessionRoomMap.get(entry.getKey())))
-            .forEach(entry -> {
-                try {
-                    sendMessage(entry.getValue(), message);
-                } catch (Exception e) {
-                    log.error("Error broadcasting to session: {}", entry.getKey(), e);
-                }
-            });
+        // Encode once and share the same frame with every recipient
+        TextMessage frame = toTextMessage(message);
+        if (frame == null) {
+            return;
+        }
+
+        boolean droppable = LOW_PRIORITY_TYPES.contains(message.get("type"));
+        deliverToLocalMembers(roomId, frame, droppable, excludeSessionId);
+
+        if (clusterRelay != null) {
+            clusterRelay.publish(roomId, excludeSessionId, droppable, frame.getPayload());
+        }
+    }
+
+    private void deliverFromCluster(String roomId, String excludeSessionId, boolean lowPriority, String payload) {
+        deliverToLocalMembers(roomId, new TextMessage(payload), lowPriority, excludeSessionId);
+    }
+
+    private void deliverToLocalMembers(String roomId, TextMessage frame, boolean droppable, String excludeSessionId) {
+        Set<BufferedChatSession> members = roomSessions.get(roomId);
+        if (members == null) {
+            return;
+        }
+
+        for (BufferedChatSession member : members) {
+            if (member.getId().equals(excludeSessionId)) {
+                continue;
+            }
+            try {
+                sendFrame(member, frame, droppable);
+            } catch (Exception e) {
+                log.error("Error broadcasting to session: {}", member.getId(), e);
+            }
+        }
+    }
+
+    private void addSessionToRoom(String roomId, BufferedChatSession session) {
+        boolean[] roomCreated = new boolean[1];
+        roomSessions.compute(roomId, (k, members) -> {
+            Set<BufferedChatSession> updated = members;
+            if (updated == null) {
+                updated = ConcurrentHashMap.newKeySet();
+                roomCreated[0] = true;
+            }
+            updated.add(session);
+            return updated;
+        });
+
+        if (roomCreated[0]) {
+            syncClusterSubscription(roomId);
+        }
+    }
+
+    private void removeSessionFromRoom(String roomId, BufferedChatSession session) {
+        boolean[] roomRemoved = new boolean[1];
+        // Both mutations run inside compute so a join can never land in a set that is being dropped
+        roomSessions.computeIfPresent(roomId, (k, members) -> {
+            members.remove(session);
+            roomRemoved[0] = members.isEmpty();
+            return roomRemoved[0] ? null : members;
+        });
+
+        if (roomRemoved[0]) {
+            syncClusterSubscription(roomId);
+        }
+    }
+
+    /**
+     * Subscribes this node to a room channel only while it has local members. Called after
+     * every room create/remove transition; re-reading the index under the lock makes the
+     * last caller win, so a racing join and leave always settle on the correct state.
+     */
+    private void syncClusterSubscription(String roomId) {
+        if (clusterRelay == null) {
+            return;
+        }
+
+        synchronized (clusterRelay) {
+            if (roomSessions.containsKey(roomId)) {
+                clusterRelay.subscribe(roomId, this::deliverFromCluster, this::applyTyping);
+            } else {
+                clusterRelay.unsubscribe(roomId);
+            }
+        }
     }
 
     private void sendMessage(WebSocketSession session, Map<String, Object> message) {
+        BufferedChatSession outbound = chatSessions.get(session.getId());
+        if (outbound == null) {
+            log.debug("Session {} is not registered, skipping outbound message", session.getId());
+            return;
+        }
+
+        TextMessage frame = toTextMessage(message);
+        if (frame != null) {
+            sendFrame(outbound, frame, false);
+        }
+    }
+
+    private void sendFrame(BufferedChatSession session, TextMessage frame, boolean droppable) {
         try {
-            if (session.isOpen()) {
-                String jsonMessage = objectMapper.writeValueAsString(message);
-                session.sendMessage(new TextMessage(jsonMessage));
+            if (!session.isOpen()) {
+                return;
+            }
+            if (droppable) {
+                if (!session.sendDroppable(frame)) {
+                    droppedFramesCounter.increment();
+                }
+            } else {
+                session.sendMessage(frame);
             }
+        } catch (SessionLimitExceededException e) {
+            // The decorator only flags the session; close it so the client reconnects, and drop it
+            // from the indexes now rather than relying on the close callback
+            slowConsumerCounter.increment();
+            log.warn("Disconnecting slow chat consumer {}: {}", session.getId(), e.getMessage());
+            closeSlowConsumer(session, e.getStatus() != null ? e.getStatus() : CloseStatus.SESSION_NOT_RELIABLE);
         } catch (IOException e) {
             log.error("Error sending WebSocket message to session: {}", session.getId(), e);
         }
     }
 
+    private void closeSlowConsumer(BufferedChatSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.warn("Error closing slow chat consumer {}: {}", session.getId(), e.getMessage());
+        }
+        removeSession(session);
+    }
+
+    private TextMessage toTextMessage(Map<String, Object> message) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing WebSocket message of type: {}", message.get("type"), e);
+            return null;
+        }
+    }
+
     private void sendError(WebSocketSession session, String errorMessage) {
         Map<String, Object> error = Map.of(
             "type", "error",
@@ -216,12 +439,16 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         String roomId = sessionRoomMap.get(sessionId);
         Long userId = sessionUserMap.get(sessionId);
         
-        chatSessions.remove(sessionId);
+        BufferedChatSession outbound = chatSessions.remove(sessionId);
         sessionRoomMap.remove(sessionId);
         sessionUserMap.remove(sessionId);
+        if (roomId != null && outbound != null) {
+            removeSessionFromRoom(roomId, outbound);
+        }
         
         // Notify others that user left
         if (roomId != null && userId != null) {
+            onTyping(roomId, userId, false);
             Map<String, Object> leaveMessage = Map.of(
                 "type", "user_disconnected",
                 "roomId", roomId,
@@ -232,6 +459,14 @@ public class ChatWebSocketHandler implements WebSocketHandler {
         }
     }
 
+    private static double totalBufferedBytes(Map<String, BufferedChatSession> sessions) {
+        long total = 0;
+        for (BufferedChatSession session : sessions.values()) {
+            total += session.getBufferSize();
+        }
+        return total;
+    }
+
     private String getRoomIdFromSession(WebSocketSession session) {
         String path = session.getUri().getPath();
         // Extract room ID from path like /ws/chat/{roomId}
@@ -247,12 +482,17 @@ public class ChatWebSocketHandler implements WebSocketHandler {
     }
 
     public void sendMessageToUser(Long userId, Map<String, Object> message) {
+        TextMessage frame = toTextMessage(message);
+        if (frame == null) {
+            return;
+        }
+
         sessionUserMap.entrySet().stream()
             .filter(entry -> userId.equals(entry.getValue()))
             .forEach(entry -> {
-                WebSocketSession session = chatSessions.get(entry.getKey());
+                BufferedChatSession session = chatSessions.get(entry.getKey());
                 if (session != null) {
-                    sendMessage(session, message);
+                    sendFrame(session, frame, false);
                 }
             });
     }
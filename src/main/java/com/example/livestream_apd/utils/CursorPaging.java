@@ -0,0 +1,25 @@
+package com.example.livestream_apd.utils;
+
+import com.example.livestream_apd.utils.exceptions.BadRequestException;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Page size handling for the cursor endpoints, whose keyset queries always read the
+ * first slice after the cursor.
+ */
+public final class CursorPaging {
+
+    private CursorPaging() {
+    }
+
+    /**
+     * Rejects a size below 1 and clamps larger ones to {@code maxSize}, so a single
+     * request cannot pull an unbounded slice.
+     */
+    public static PageRequest firstSlice(int size, int maxSize) {
+        if (size < 1) {
+            throw new BadRequestException("Kích thước trang phải lớn hơn 0");
+        }
+        return PageRequest.of(0, Math.min(size, maxSize));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.livestream_apd.utils;
+
+import com.example.livestream_apd.utils.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over (createdAt, id), newest first. A page continues strictly
+ * after the last row of the previous one, so deep pages cost the same as the first.
+ */
+public record MessageCursor(LocalDateTime createdAt, Long id) {
+
+    // Sorts after every real row, so the first page can use the same keyset query
+    private static final MessageCursor FIRST = new MessageCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+    private static final char SEPARATOR = '|';
+
+    public static MessageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Cursor không hợp lệ", e);
+        }
+    }
+
+    public static String encode(LocalDateTime createdAt, Long id) {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
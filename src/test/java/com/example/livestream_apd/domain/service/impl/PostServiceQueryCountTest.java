@@ -0,0 +1,175 @@
+package com.example.livestream_apd.domain.service.impl;
+
+import com.example.livestream_apd.application.dto.response.PostResponse;
+import com.example.livestream_apd.domain.entity.Like;
+import com.example.livestream_apd.domain.entity.Post;
+import com.example.livestream_apd.domain.entity.Share;
+import com.example.livestream_apd.domain.entity.User;
+import com.example.livestream_apd.infrastructure.service.HomeTimelineStore;
+import com.example.livestream_apd.infrastructure.service.PostCounterAggregator;
+import com.example.livestream_apd.infrastructure.service.TrendingPostRanker;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the SQL statements behind the post list pages. Each page is read once with all
+ * posts by one author and once with every post by a different author; the count must be
+ * the same both times, so nothing is loaded per post or per author. Runs against the
+ * configured database and rolls back.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PostServiceImpl.class)
+class PostServiceQueryCountTest {
+
+    private static final int POSTS = 6;
+    // Posts, eager author roles, eager author social links, liked ids, shared ids
+    private static final long MAX_STATEMENTS_PER_PAGE = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PostServiceImpl postService;
+
+    @MockitoBean
+    private HomeTimelineStore homeTimelineStore;
+
+    @MockitoBean
+    private TrendingPostRanker trendingPostRanker;
+
+    @MockitoBean
+    private PostCounterAggregator postCounterAggregator;
+
+    private final Pageable page = PageRequest.of(0, 10);
+    private Statistics statistics;
+    private User viewerOfOne;
+    private User viewerOfMany;
+    private User singleAuthor;
+    private User authorOfOne;
+    private List<Long> singleAuthorPostIds;
+    private List<Long> manyAuthorPostIds;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String run = String.valueOf(System.nanoTime());
+
+        singleAuthor = persistUser("qc-single-" + run);
+        singleAuthorPostIds = new ArrayList<>();
+        manyAuthorPostIds = new ArrayList<>();
+        viewerOfOne = persistUser("qc-viewer1-" + run);
+        viewerOfMany = persistUser("qc-viewerN-" + run);
+        viewerOfOne.getFollowing().add(singleAuthor);
+        for (int i = 0; i < POSTS; i++) {
+            singleAuthorPostIds.add(persistPost(singleAuthor).getId());
+            User author = persistUser("qc-author" + i + "-" + run);
+            viewerOfMany.getFollowing().add(author);
+            manyAuthorPostIds.add(persistPost(author).getId());
+            if (authorOfOne == null) {
+                authorOfOne = author;
+            }
+        }
+
+        // Viewer state on the first post of each list, so the liked/shared lookups return rows
+        Post liked = entityManager.find(Post.class, singleAuthorPostIds.get(0));
+        entityManager.persist(Like.builder().user(viewerOfOne).post(liked).build());
+        entityManager.persist(Share.builder().user(viewerOfOne).post(liked).build());
+        Post likedByMany = entityManager.find(Post.class, manyAuthorPostIds.get(0));
+        entityManager.persist(Like.builder().user(viewerOfMany).post(likedByMany).build());
+        entityManager.persist(Share.builder().user(viewerOfMany).post(likedByMany).build());
+        entityManager.flush();
+    }
+
+    @Test
+    void timelineFromDatabaseDoesNotLoadPerPost() {
+        when(homeTimelineStore.read(anyLong(), any())).thenReturn(Optional.empty());
+
+        long single = countStatements(POSTS, () -> postService.getTimelinePosts(viewerOfOne, page));
+        long many = countStatements(POSTS, () -> postService.getTimelinePosts(viewerOfMany, page));
+
+        assertThat(many).isEqualTo(single).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void timelineFromStoreDoesNotLoadPerPost() {
+        when(homeTimelineStore.read(viewerOfOne.getId(), page))
+                .thenReturn(Optional.of(new HomeTimelineStore.TimelineSlice(singleAuthorPostIds, POSTS)));
+        when(homeTimelineStore.read(viewerOfMany.getId(), page))
+                .thenReturn(Optional.of(new HomeTimelineStore.TimelineSlice(manyAuthorPostIds, POSTS)));
+
+        long single = countStatements(POSTS, () -> postService.getTimelinePosts(viewerOfOne, page));
+        long many = countStatements(POSTS, () -> postService.getTimelinePosts(viewerOfMany, page));
+
+        assertThat(many).isEqualTo(single).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void trendingDoesNotLoadPerPost() {
+        when(trendingPostRanker.ranking()).thenReturn(singleAuthorPostIds);
+        long single = countStatements(POSTS, () -> postService.getTrendingPosts(viewerOfOne, page));
+        when(trendingPostRanker.ranking()).thenReturn(manyAuthorPostIds);
+        long many = countStatements(POSTS, () -> postService.getTrendingPosts(viewerOfMany, page));
+
+        assertThat(many).isEqualTo(single).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void userPostsDoNotLoadPerPost() {
+        long one = countStatements(1, () -> postService.getUserPosts(viewerOfMany, authorOfOne.getId(), page));
+        long all = countStatements(POSTS, () -> postService.getUserPosts(viewerOfOne, singleAuthor.getId(), page));
+
+        // Plus the profile lookup by id
+        assertThat(all).isEqualTo(one).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE + 1);
+    }
+
+    private long countStatements(int expectedPosts, Supplier<Page<PostResponse>> pageRead) {
+        // Reads start from an empty persistence context, as a request would
+        entityManager.clear();
+        statistics.clear();
+        Page<PostResponse> result = pageRead.get();
+        assertThat(result.getContent()).hasSize(expectedPosts);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User persistUser(String username) {
+        return entityManager.persist(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .passwordHash("-")
+                .fullName(username)
+                .build());
+    }
+
+    private Post persistPost(User author) {
+        return entityManager.persist(Post.builder()
+                .user(author)
+                .caption("query count")
+                .build());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.livestream_apd.infrastructure.search;
+
+import com.example.livestream_apd.domain.entity.ChatRoom;
+import com.example.livestream_apd.domain.repository.ChatMessageRepository;
+import com.example.livestream_apd.domain.repository.ChatRoomRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the Lucene index with the LIKE query on one large room. Opt-in, because it
+ * writes the requested number of messages into the configured database:
+ * {@code ./gradlew test --tests '*MessageSearchBenchmarkTest' -Dsearch.benchmark.messages=10000000}
+ */
+@SpringBootTest(properties = "app.search.enabled=true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "search.benchmark.messages", matches = "\\d+")
+class MessageSearchBenchmarkTest {
+
+    private static final String[] WORDS = {
+            "xin", "chào", "mọi", "người", "hôm", "nay", "trời", "đẹp", "quá", "stream",
+            "vui", "lắm", "cảm", "ơn", "bạn", "nhiều", "tặng", "quà", "đi", "nào",
+            "tiếng", "việt", "game", "hay", "thật", "sự", "luôn", "ủng", "hộ", "idol"
+    };
+    private static final List<String> QUERIES = List.of("tieng viet", "cảm ơn", "idol", "qua tang", "ủng h");
+    private static final int INSERT_BATCH = 5000;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatRoomRepository chatRoomRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private MessageSearchIndex searchIndex;
+
+    private long userId;
+    private long roomId;
+
+    @BeforeAll
+    void seed() {
+        int total = Integer.parseInt(System.getProperty("search.benchmark.messages"));
+        GeneratedKeyHolder userKey = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO users (username, email, password_hash, full_name) VALUES (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            String name = "bench" + System.currentTimeMillis();
+            ps.setString(1, name);
+            ps.setString(2, name + "@example.com");
+            ps.setString(3, "-");
+            ps.setString(4, "Search Benchmark");
+            return ps;
+        }, userKey);
+        userId = userKey.getKey().longValue();
+        roomId = chatRoomRepository.save(ChatRoom.builder().build()).getId();
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+        for (int from = 0; from < total; from += INSERT_BATCH) {
+            List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+            for (int i = from; i < Math.min(from + INSERT_BATCH, total); i++) {
+                StringBuilder content = new StringBuilder();
+                for (int w = 0, n = 4 + random.nextInt(12); w < n; w++) {
+                    content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                rows.add(new Object[]{userId, roomId, content.toString().trim(), "TEXT",
+                        Timestamp.valueOf(start.plusSeconds(i / 4))});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO chat_messages (user_id, chat_room_id, content, message_type, is_deleted, created_at) " +
+                    "VALUES (?, ?, ?, ?, false, ?)", rows);
+        }
+    }
+
+    @AfterAll
+    void cleanUp() {
+        while (jdbcTemplate.update("DELETE FROM chat_messages WHERE chat_room_id = ? LIMIT 50000", roomId) > 0) {
+            // Chunked so the delete does not hold one huge transaction
+        }
+        jdbcTemplate.update("DELETE FROM chat_rooms WHERE id = ?", roomId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+
+    @Test
+    void indexBeatsLikeOnLargeRoom() throws InterruptedException {
+        long buildStart = System.nanoTime();
+        searchIndex.rebuildAsync();
+        while (searchIndex.isRebuilding() || !searchIndex.isReady()) {
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        System.out.printf("Index build: %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart));
+
+        ChatRoom room = chatRoomRepository.findById(roomId).orElseThrow();
+        PageRequest page = PageRequest.of(0, 20);
+        System.out.printf("%-12s %12s %12s%n", "query", "LIKE ms", "index ms");
+        for (String query : QUERIES) {
+            long likeNanos = time(() -> chatMessageRepository.searchInChatRoom(room, query, page));
+            long indexNanos = time(() -> searchIndex.search(MessageSearchIndex.Kind.CHAT, roomId, query, page));
+            System.out.printf("%-12s %12.2f %12.2f%n", query, likeNanos / 1e6, indexNanos / 1e6);
+
+            assertThat(searchIndex.search(MessageSearchIndex.Kind.CHAT, roomId, query, page)).isPresent();
+        }
+    }
+
+    /**
+     * Median of {@link #RUNS} runs after one warm-up.
+     */
+    private static long time(Runnable search) {
+        search.run();
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            search.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.livestream_apd.infrastructure.service;
+
+import com.example.livestream_apd.application.dto.response.ApiResponse;
+import com.example.livestream_apd.application.dto.response.DirectConversationResponse;
+import com.example.livestream_apd.application.dto.response.PagedResponse;
+import com.example.livestream_apd.domain.entity.DirectConversation;
+import com.example.livestream_apd.domain.entity.DirectMessage;
+import com.example.livestream_apd.domain.entity.User;
+import com.example.livestream_apd.domain.repository.DirectConversationRepository;
+import com.example.livestream_apd.infrastructure.search.MessageSearchIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the SQL statements behind the conversation list, search and unread inbox. Each
+ * is read for a user with one conversation and for a user with six; the count must be
+ * the same both times, so nothing is loaded per conversation. Runs against the configured
+ * database and rolls back.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(DirectConversationServiceImpl.class)
+class DirectConversationQueryCountTest {
+
+    private static final int CONVERSATIONS = 6;
+    // User, page, eager partner roles, eager partner social links, last messages
+    private static final long MAX_STATEMENTS_PER_PAGE = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DirectConversationRepository conversationRepository;
+
+    @Autowired
+    private DirectConversationServiceImpl conversationService;
+
+    @MockitoBean
+    private DirectMessageUnreadCounters unreadCounters;
+
+    @MockitoBean
+    private MessageSearchIndex searchIndex;
+
+    private final Pageable page = PageRequest.of(0, 10);
+    private Statistics statistics;
+    private User userWithOne;
+    private User userWithMany;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String run = String.valueOf(System.nanoTime());
+
+        userWithOne = persistUser("qc-inbox1-" + run);
+        userWithMany = persistUser("qc-inboxN-" + run);
+        persistConversation(userWithOne, persistUser("qc-peer-" + run));
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            persistConversation(userWithMany, persistUser("qc-peer" + i + "-" + run));
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void conversationListDoesNotLoadPerConversation() {
+        long one = countStatements(1, () -> conversationService.getConversations(userWithOne.getId(), page));
+        long many = countStatements(CONVERSATIONS, () -> conversationService.getConversations(userWithMany.getId(), page));
+
+        assertThat(many).isEqualTo(one).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void conversationSearchDoesNotLoadPerConversation() {
+        String query = "qc-peer";
+        long one = countStatements(1, () -> conversationService.searchConversations(userWithOne.getId(), query, page));
+        long many = countStatements(CONVERSATIONS, () -> conversationService.searchConversations(userWithMany.getId(), query, page));
+
+        assertThat(many).isEqualTo(one).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    @Test
+    void unreadInboxDoesNotLoadPerConversation() {
+        long one = countStatements(1, () -> conversationService.getConversationsWithUnreadMessages(userWithOne.getId(), page));
+        long many = countStatements(CONVERSATIONS, () -> conversationService.getConversationsWithUnreadMessages(userWithMany.getId(), page));
+
+        assertThat(many).isEqualTo(one).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    private long countStatements(int expectedConversations,
+                                 Supplier<ApiResponse<PagedResponse<DirectConversationResponse>>> pageRead) {
+        // Reads start from an empty persistence context, as a request would
+        entityManager.clear();
+        statistics.clear();
+        ApiResponse<PagedResponse<DirectConversationResponse>> result = pageRead.get();
+        assertThat(result.getSuccess()).isTrue();
+        assertThat(result.getData().getContent()).hasSize(expectedConversations)
+                .allSatisfy(conversation -> {
+                    assertThat(conversation.getLastMessage()).isNotNull();
+                    assertThat(conversation.getLastMessage().getReplyToMessage()).isNotNull();
+                });
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void persistConversation(User owner, User peer) {
+        DirectConversation conversation = entityManager.persist(DirectConversation.builder()
+                .user1(owner)
+                .user2(peer)
+                .lastMessageAt(LocalDateTime.now())
+                .build());
+        // The last message replies to the first, so the preview needs the replied-to message too
+        DirectMessage first = entityManager.persist(DirectMessage.builder()
+                .conversation(conversation)
+                .sender(owner)
+                .content("hello")
+                .build());
+        entityManager.persist(DirectMessage.builder()
+                .conversation(conversation)
+                .sender(peer)
+                .content("hi")
+                .replyToMessage(first)
+                .build());
+        entityManager.flush();
+        conversationRepository.addUnreadCount(conversation.getId(), owner.getId(), 1);
+    }
+
+    private User persistUser(String username) {
+        return entityManager.persist(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .passwordHash("-")
+                .fullName(username)
+                .build());
+    }
+}
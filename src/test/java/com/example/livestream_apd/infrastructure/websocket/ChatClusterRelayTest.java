@@ -0,0 +1,243 @@
+package com.example.livestream_apd.infrastructure.websocket;
+
+import com.example.livestream_apd.config.RedisPubSubConfig;
+import com.example.livestream_apd.presentation.websocket.ChatWebSocketHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs two relay nodes as separate application contexts against a throwaway Redis
+ * container and checks what each one receives from the other; skipped when Docker is not
+ * available. Every frame a node publishes goes to its own subscription as well, so each
+ * test has the receiving node publish afterwards; pub/sub keeps per-connection order, so
+ * the first thing a node receives must then be the other node's message and never its own.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ChatClusterRelayTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({RedisAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import({RedisPubSubConfig.class, ChatClusterRelay.class, ChatWebSocketHandler.class})
+    static class RelayNode {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String roomId = "relay-test-" + UUID.randomUUID();
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private ChatClusterRelay relayA;
+    private ChatClusterRelay relayB;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+        relayA = nodeA.getBean(ChatClusterRelay.class);
+        relayB = nodeB.getBean(ChatClusterRelay.class);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void chatMessageSentOnOneNodeReachesSessionsOnTheOther() throws Exception {
+        ChatWebSocketHandler handlerA = nodeA.getBean(ChatWebSocketHandler.class);
+        ChatWebSocketHandler handlerB = nodeB.getBean(ChatWebSocketHandler.class);
+        BlockingQueue<String> sentToSender = new LinkedBlockingQueue<>();
+        BlockingQueue<String> sentToReceiver = new LinkedBlockingQueue<>();
+        WebSocketSession sender = connect(handlerA, "sender", 1L, sentToSender);
+        connect(handlerB, "receiver", 2L, sentToReceiver);
+        awaitSubscribers("chat:room:" + roomId, 2);
+
+        handlerA.handleMessage(sender, new TextMessage("{\"type\":\"chat_message\",\"content\":\"hello from A\"}"));
+
+        await().atMost(TIMEOUT).until(() -> framesOfType(sentToReceiver, "new_message").size() == 1);
+        JsonNode delivered = framesOfType(sentToReceiver, "new_message").get(0);
+        assertThat(delivered.get("roomId").asText()).isEqualTo(roomId);
+        assertThat(delivered.get("content").asText()).isEqualTo("hello from A");
+        assertThat(delivered.get("userId").asLong()).isEqualTo(1L);
+        // The sender is excluded locally, and node A ignores its own frame coming back from Redis
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertThat(framesOfType(sentToSender, "new_message")).isEmpty();
+    }
+
+    @Test
+    void roomFrameReachesTheOtherNodeOnly() throws InterruptedException {
+        BlockingQueue<String> deliveredOnA = new LinkedBlockingQueue<>();
+        BlockingQueue<String> deliveredOnB = new LinkedBlockingQueue<>();
+        relayA.subscribe(roomId, recordFrames(deliveredOnA), (room, userId, typing) -> { });
+        relayB.subscribe(roomId, recordFrames(deliveredOnB), (room, userId, typing) -> { });
+        awaitSubscribers("chat:room:" + roomId, 2);
+
+        relayA.publish(roomId, "session-1", true, "{\"text\":\"from A\"}");
+        assertThat(deliveredOnB.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS))
+                .isEqualTo(roomId + "|session-1|true|{\"text\":\"from A\"}");
+
+        relayB.publish(roomId, null, false, "{\"text\":\"from B\"}");
+        assertThat(deliveredOnA.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS))
+                .isEqualTo(roomId + "|null|false|{\"text\":\"from B\"}");
+        assertThat(deliveredOnA).isEmpty();
+    }
+
+    @Test
+    void typingEventReachesTheOtherNodesCoalescer() throws InterruptedException {
+        BlockingQueue<String> framesOnA = new LinkedBlockingQueue<>();
+        BlockingQueue<String> typingOnA = new LinkedBlockingQueue<>();
+        BlockingQueue<String> typingOnB = new LinkedBlockingQueue<>();
+        relayA.subscribe(roomId, recordFrames(framesOnA),
+                (room, userId, typing) -> typingOnA.add(room + "|" + userId + "|" + typing));
+        relayB.subscribe(roomId, recordFrames(new LinkedBlockingQueue<>()),
+                (room, userId, typing) -> typingOnB.add(room + "|" + userId + "|" + typing));
+        awaitSubscribers("chat:room:" + roomId, 2);
+
+        relayA.publishTyping(roomId, 7L, false);
+        assertThat(typingOnB.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)).isEqualTo(roomId + "|7|false");
+
+        relayB.publishTyping(roomId, 42L, true);
+        assertThat(typingOnA.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)).isEqualTo(roomId + "|42|true");
+        assertThat(typingOnA).isEmpty();
+        assertThat(framesOnA).isEmpty();
+    }
+
+    @Test
+    void historyEventReachesTheOtherNodeOnly() throws InterruptedException {
+        BlockingQueue<String> eventsOnA = new LinkedBlockingQueue<>();
+        BlockingQueue<String> eventsOnB = new LinkedBlockingQueue<>();
+        relayA.subscribeHistoryEvents(eventsOnA::add);
+        relayB.subscribeHistoryEvents(eventsOnB::add);
+        awaitSubscribers("chat:history", 2);
+
+        relayA.publishHistoryEvent("from A");
+        assertThat(eventsOnB.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)).isEqualTo("from A");
+
+        relayB.publishHistoryEvent("from B");
+        assertThat(eventsOnA.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)).isEqualTo("from B");
+        assertThat(eventsOnA).isEmpty();
+    }
+
+    @Test
+    void unsubscribedNodeStopsReceiving() throws InterruptedException {
+        BlockingQueue<String> deliveredOnA = new LinkedBlockingQueue<>();
+        BlockingQueue<String> deliveredOnB = new LinkedBlockingQueue<>();
+        relayA.subscribe(roomId, recordFrames(deliveredOnA), (room, userId, typing) -> { });
+        relayB.subscribe(roomId, recordFrames(deliveredOnB), (room, userId, typing) -> { });
+        awaitSubscribers("chat:room:" + roomId, 2);
+
+        relayB.unsubscribe(roomId);
+        await().atMost(TIMEOUT).until(() -> subscriberCount("chat:room:" + roomId) == 1);
+        relayA.publish(roomId, null, false, "{\"text\":\"after leave\"}");
+        // B is not subscribed any more, so nothing can arrive however long it waits
+        assertThat(deliveredOnB.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(RelayNode.class)
+                .web(WebApplicationType.NONE)
+                .properties("app.websocket.chat.cluster.enabled=true", "spring.main.banner-mode=off",
+                        "spring.data.redis.host=" + REDIS.getHost(),
+                        "spring.data.redis.port=" + REDIS.getMappedPort(6379))
+                .run();
+    }
+
+    // A client connected to the room on one node; frames sent to it are recorded
+    private WebSocketSession connect(ChatWebSocketHandler handler, String sessionId, Long userId,
+                                     BlockingQueue<String> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(sessionId);
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/chat/" + roomId));
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> received.add(((TextMessage) invocation.getArgument(0)).getPayload()))
+                .when(session).sendMessage(any());
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new TextMessage(
+                "{\"type\":\"join_room\",\"roomId\":\"" + roomId + "\",\"userId\":" + userId + "}"));
+        return session;
+    }
+
+    private List<JsonNode> framesOfType(BlockingQueue<String> frames, String type) throws Exception {
+        List<JsonNode> matching = new ArrayList<>();
+        for (String frame : frames) {
+            JsonNode node = objectMapper.readTree(frame);
+            if (type.equals(node.path("type").asText())) {
+                matching.add(node);
+            }
+        }
+        return matching;
+    }
+
+    private static ChatClusterRelay.RoomDelivery recordFrames(BlockingQueue<String> delivered) {
+        return (room, excludeSessionId, lowPriority, payload) ->
+                delivered.add(room + "|" + excludeSessionId + "|" + lowPriority + "|" + payload);
+    }
+
+    // Listeners are subscribed asynchronously; waits until Redis reports them on the channel
+    private void awaitSubscribers(String channel, long atLeast) {
+        await().atMost(TIMEOUT).until(() -> subscriberCount(channel) >= atLeast);
+    }
+
+    private long subscriberCount(String channel) {
+        Long count = nodeA.getBean(StringRedisTemplate.class).execute((RedisCallback<Long>) connection -> {
+            Object reply = connection.execute("PUBSUB",
+                    "NUMSUB".getBytes(StandardCharsets.UTF_8), channel.getBytes(StandardCharsets.UTF_8));
+            return reply instanceof List<?> counts && counts.size() == 2 ? (Long) counts.get(1) : 0L;
+        });
+        return count != null ? count : 0;
+    }
+}